@@ -17,7 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 @Configuration
-@Profile("!test") // Don't load this configuration for test profile
+@Profile("!test & !memory & !disk") // Tests mock Firestore; the local storage profiles do without it
 public class FirebaseConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseConfig.class);
@@ -0,0 +1,114 @@
+package org.example.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.model.Category;
+import org.example.model.Expense;
+import org.example.model.User;
+import org.example.repository.local.DocumentTable;
+import org.example.repository.local.LogDocumentTable;
+import org.example.repository.local.MemoryDocumentTable;
+import org.example.repository.local.SimulatedLatency;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Storage for running without Firebase, selected by profile in place of the Firestore
+ * repositories. "memory" keeps documents on the heap and loses them on shutdown; "disk"
+ * keeps them in append-only logs under app.storage.disk.directory.
+ */
+@Configuration
+public class LocalStorageConfig {
+
+    @Configuration
+    @Profile("memory")
+    static class Memory {
+
+        @Bean
+        public DocumentTable<Expense> expenseTable() {
+            return new MemoryDocumentTable<>(LocalStorageConfig::copy);
+        }
+
+        @Bean
+        public DocumentTable<User> userTable() {
+            return new MemoryDocumentTable<>(LocalStorageConfig::copy);
+        }
+
+        @Bean
+        public DocumentTable<Category> categoryTable() {
+            return new MemoryDocumentTable<>(LocalStorageConfig::copy);
+        }
+    }
+
+    @Configuration
+    @Profile("disk")
+    static class Disk {
+
+        // Stored documents are the model classes as JSON, independent of the API's date format
+        private final ObjectMapper mapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+
+        @Value("${app.storage.disk.directory:./data}")
+        private String directory;
+
+        // Off by default: a crash can lose the last writes, but never corrupts earlier ones
+        @Value("${app.storage.disk.fsync:false}")
+        private boolean fsync;
+
+        @Bean(destroyMethod = "close")
+        public DocumentTable<Expense> expenseTable() throws IOException {
+            return new LogDocumentTable<>(Path.of(directory), "expenses", Expense.class, mapper, fsync);
+        }
+
+        @Bean(destroyMethod = "close")
+        public DocumentTable<User> userTable() throws IOException {
+            return new LogDocumentTable<>(Path.of(directory), "users", User.class, mapper, fsync);
+        }
+
+        @Bean(destroyMethod = "close")
+        public DocumentTable<Category> categoryTable() throws IOException {
+            return new LogDocumentTable<>(Path.of(directory), "categories", Category.class, mapper, fsync);
+        }
+    }
+
+    /**
+     * Lets the local backends stand in for Firestore in load tests: every repository call
+     * completes one simulated round trip later.
+     */
+    @Bean
+    @Profile("memory | disk")
+    public SimulatedLatency simulatedLatency(@Value("${app.storage.latency.base-ms:0}") long baseMillis,
+                                             @Value("${app.storage.latency.jitter-ms:0}") long jitterMillis) {
+        return new SimulatedLatency(baseMillis, jitterMillis);
+    }
+
+    private static Expense copy(Expense expense) {
+        return new Expense(expense.getId(), expense.getTitle(), expense.getDescription(), expense.getAmount(),
+                expense.getCategory(), expense.getDate(), expense.getUserId(), expense.getCreatedAt(),
+                expense.getUpdatedAt(), expense.getVersion());
+    }
+
+    private static User copy(User user) {
+        return new User(user.getId(), user.getUsername(), user.getEmail(), user.getPassword(),
+                user.getFirstName(), user.getLastName(),
+                user.getRoles() != null ? new ArrayList<>(user.getRoles()) : null,
+                user.isEnabled(), user.getCreatedAt(), user.getUpdatedAt(), user.getLastLoginAt());
+    }
+
+    private static Category copy(Category category) {
+        return new Category(category.getId(), category.getName(), category.getDescription(),
+                category.getColor(), category.getIcon());
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.config;
+
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import org.example.metrics.InstrumentedRepository;
+import org.example.metrics.RequestStatsFilter;
+import org.example.repository.CategoryRepository;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.UserRepository;
+import org.example.security.JwtUtils;
+import org.example.security.PrincipalCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Application metrics on top of the actuator's JVM and HTTP server metrics, all scraped
+ * from /actuator/prometheus: repository calls, documents read per request and the
+ * security caches. JWT validation and exports are timed where they happen. Per request,
+ * the same measurements feed the Server-Timing header and the slow request log.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Wraps every repository bean, Firestore or local, in an {@link InstrumentedRepository}.
+     * Static, and resolving the registry lazily, so that it does not pull beans into
+     * existence before post-processing is set up.
+     */
+    @Bean
+    public static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ExpenseRepository repository) {
+                    return InstrumentedRepository.instrument(repository, ExpenseRepository.class, "expenses",
+                            registry.getObject());
+                }
+                if (bean instanceof UserRepository repository) {
+                    return InstrumentedRepository.instrument(repository, UserRepository.class, "users",
+                            registry.getObject());
+                }
+                if (bean instanceof CategoryRepository repository) {
+                    return InstrumentedRepository.instrument(repository, CategoryRepository.class, "categories",
+                            registry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public RequestStatsFilter requestStatsFilter(MeterRegistry registry,
+                                                 @Value("${app.tracing.server-timing:true}") boolean serverTiming,
+                                                 @Value("${app.tracing.slow-request-ms:1000}") long slowRequestMillis,
+                                                 @Value("${app.tracing.max-round-trips:10}") long maxRoundTrips) {
+        return new RequestStatsFilter(registry, serverTiming, slowRequestMillis, maxRoundTrips);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestStatsFilter> requestStatsFilterRegistration(RequestStatsFilter filter) {
+        FilterRegistrationBean<RequestStatsFilter> registration = new FilterRegistrationBean<>(filter);
+        // Ahead of Spring Security, so that the JWT filter's user lookups count towards the request
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+
+    @Bean
+    public WebMvcConfigurer requestStatsAsyncSupport(RequestStatsFilter filter) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.registerCallableInterceptors(filter.asyncInterceptor());
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder securityCacheMetrics(PrincipalCache principalCache, JwtUtils jwtUtils) {
+        return registry -> {
+            bindCache(registry, "principals", principalCache, PrincipalCache::stats, PrincipalCache::size);
+            bindCache(registry, "jwt-claims", jwtUtils, JwtUtils::claimsCacheStats, JwtUtils::claimsCacheSize);
+        };
+    }
+
+    // Named like Micrometer's own cache metrics, which need the Cache itself rather than its stats
+    private static <T> void bindCache(MeterRegistry registry, String name, T cache,
+                                      Function<T, CacheStats> stats, ToDoubleFunction<T> size) {
+        FunctionCounter.builder("cache.gets", cache, c -> stats.apply(c).hitCount())
+                .tag("cache", name)
+                .tag("result", "hit")
+                .description("The number of times cache lookup methods have returned a cached value")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, c -> stats.apply(c).missCount())
+                .tag("cache", name)
+                .tag("result", "miss")
+                .description("The number of times cache lookup methods have returned an uncached value")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", cache, c -> stats.apply(c).evictionCount())
+                .tag("cache", name)
+                .description("Cache evictions")
+                .register(registry);
+        Gauge.builder("cache.size", cache, size)
+                .tag("cache", name)
+                .description("The number of entries in this cache")
+                .register(registry);
+    }
+}
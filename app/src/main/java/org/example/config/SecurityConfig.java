@@ -6,19 +6,26 @@ import org.example.security.JwtAuthenticationFilter;
 import org.example.security.OAuth2AuthenticationSuccessHandler;
 import org.example.security.OAuth2AuthenticationFailureHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.StringUtils;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -30,6 +37,8 @@ import java.util.Arrays;
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
 
+    private static final String SCRAPE_ROLE = "METRICS";
+
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
@@ -42,6 +51,12 @@ public class SecurityConfig {
     @Autowired
     private OAuth2AuthenticationFailureHandler oAuth2AuthenticationFailureHandler;
 
+    @Value("${app.metrics.scrape-username:prometheus}")
+    private String scrapeUsername;
+
+    @Value("${app.metrics.scrape-password:}")
+    private String scrapePassword;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
@@ -65,6 +80,43 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
 
+    /**
+     * Actuator endpoints have a chain of their own, ahead of the API's. Health and info are
+     * public. Metrics describe every user's traffic, so they need HTTP basic with the scrape
+     * credential from app.metrics.*, a static secret a Prometheus scrape config can hold;
+     * while no password is configured, nobody can read them.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http.securityMatcher("/actuator/**")
+            .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .authorizeHttpRequests(auth -> auth
+                .requestMatchers("/actuator/health/**", "/actuator/info").permitAll()
+                .anyRequest().hasRole(SCRAPE_ROLE)
+            )
+            .httpBasic(Customizer.withDefaults())
+            // Only the scrape credential; API users cannot sign in here
+            .authenticationManager(new ProviderManager(scrapeAuthenticationProvider()));
+
+        return http.build();
+    }
+
+    private DaoAuthenticationProvider scrapeAuthenticationProvider() {
+        InMemoryUserDetailsManager scrapeUsers = new InMemoryUserDetailsManager();
+        if (StringUtils.hasText(scrapePassword)) {
+            scrapeUsers.createUser(User.withUsername(scrapeUsername)
+                    .password(passwordEncoder().encode(scrapePassword))
+                    .roles(SCRAPE_ROLE)
+                    .build());
+        }
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(scrapeUsers);
+        provider.setPasswordEncoder(passwordEncoder());
+        return provider;
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -78,7 +130,6 @@ public class SecurityConfig {
                 .requestMatchers("/login/oauth2/**").permitAll()
                 .requestMatchers("/swagger-ui/**", "/swagger-ui.html").permitAll()
                 .requestMatchers("/v3/api-docs/**", "/api-docs/**").permitAll()
-                .requestMatchers("/actuator/**").permitAll()
                 // Protected endpoints
                 .requestMatchers("/api/expenses/**").authenticated()
                 .requestMatchers("/api/categories/**").authenticated()
@@ -101,8 +152,10 @@ public class SecurityConfig {
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // Let browser clients read ETags for If-Match / If-None-Match
+        configuration.setExposedHeaders(Arrays.asList("ETag"));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
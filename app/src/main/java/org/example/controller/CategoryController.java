@@ -5,13 +5,16 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.example.model.Category;
 import org.example.service.CategoryService;
+import org.example.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @RestController
@@ -25,45 +28,41 @@ public class CategoryController {
 
     @PostMapping
     @Operation(summary = "Create a new category", description = "Creates a new expense category")
-    public ResponseEntity<Category> createCategory(@Valid @RequestBody Category category) 
-            throws ExecutionException, InterruptedException {
-        Category response = categoryService.createCategory(category);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<Category>> createCategory(@Valid @RequestBody Category category) {
+        return categoryService.createCategory(category)
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
     }
 
     @PutMapping("/{id}")
     @Operation(summary = "Update a category", description = "Updates an existing category by ID")
-    public ResponseEntity<Category> updateCategory(
+    public CompletableFuture<ResponseEntity<Category>> updateCategory(
             @Parameter(description = "Category ID") @PathVariable String id,
-            @Valid @RequestBody Category category) throws ExecutionException, InterruptedException {
-        Category response = categoryService.updateCategory(id, category);
-        return ResponseEntity.ok(response);
+            @Valid @RequestBody Category category) {
+        return categoryService.updateCategory(id, category).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get category by ID", description = "Retrieves a specific category by its ID")
-    public ResponseEntity<Category> getCategoryById(
-            @Parameter(description = "Category ID") @PathVariable String id) 
-            throws ExecutionException, InterruptedException {
-        Category response = categoryService.getCategoryById(id);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<Category>> getCategoryById(
+            @Parameter(description = "Category ID") @PathVariable String id) {
+        return categoryService.getCategoryById(id).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping
-    @Operation(summary = "Get all categories", description = "Retrieves all expense categories")
-    public ResponseEntity<List<Category>> getAllCategories() 
-            throws ExecutionException, InterruptedException {
-        List<Category> responses = categoryService.getAllCategories();
-        return ResponseEntity.ok(responses);
+    @Operation(summary = "Get all categories", description = "Retrieves all expense categories. "
+            + "Responds 304 when If-None-Match names the current ETag")
+    public CompletableFuture<ResponseEntity<List<Category>>> getAllCategories(
+            @Parameter(description = "ETag of the copy the client already has")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return categoryService.getAllCategories(ifNoneMatch).thenApply(ETags::toResponse);
     }
 
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete a category", description = "Deletes a category by ID")
-    public ResponseEntity<Void> deleteCategory(
-            @Parameter(description = "Category ID") @PathVariable String id) 
-            throws ExecutionException, InterruptedException {
-        categoryService.deleteCategory(id);
-        return ResponseEntity.noContent().build();
+    public CompletableFuture<ResponseEntity<Void>> deleteCategory(
+            @Parameter(description = "Category ID") @PathVariable String id) {
+        return categoryService.deleteCategory(id)
+                .thenApply(ignored -> ResponseEntity.noContent().<Void>build());
     }
 
     @PostMapping("/initialize")
@@ -9,18 +9,29 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.dto.BulkImportResponse;
+import org.example.dto.ExpensePageResponse;
+import org.example.dto.ExpensePatchRequest;
 import org.example.dto.ExpenseRequest;
 import org.example.dto.ExpenseResponse;
+import org.example.exception.PreconditionFailedException;
+import org.example.service.ExpenseImportService;
 import org.example.service.ExpenseService;
+import org.example.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @RestController
@@ -32,6 +43,9 @@ public class ExpenseController {
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private ExpenseImportService expenseImportService;
+
     @Operation(
         summary = "💳 Create New Expense",
         description = "Add a new expense record to your account",
@@ -66,7 +80,7 @@ public class ExpenseController {
         @ApiResponse(responseCode = "401", description = "Not authenticated")
     })
     @PostMapping
-    public ResponseEntity<ExpenseResponse> createExpense(
+    public CompletableFuture<ResponseEntity<ExpenseResponse>> createExpense(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Expense details to create",
             required = true,
@@ -87,28 +101,59 @@ public class ExpenseController {
                 )
             )
         )
-        @Valid @RequestBody ExpenseRequest request) 
-            throws ExecutionException, InterruptedException {
-        ExpenseResponse response = expenseService.createExpense(request);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+        @Valid @RequestBody ExpenseRequest request) {
+        return expenseService.createExpense(request)
+                .thenApply(response -> withETag(HttpStatus.CREATED, response));
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, ExpenseImportService.NDJSON_VALUE})
+    @Operation(
+        summary = "Bulk import expenses",
+        description = "Imports many expenses in one request. The body is either a JSON array of expenses "
+                + "or NDJSON (one expense per line, Content-Type: application/x-ndjson). "
+                + "Rows are validated individually and failures are reported by row number.",
+        security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public ResponseEntity<BulkImportResponse> importExpenses(HttpServletRequest request)
+            throws IOException, ExecutionException, InterruptedException {
+        boolean ndjson = request.getContentType() != null
+                && request.getContentType().startsWith(ExpenseImportService.NDJSON_VALUE);
+        BulkImportResponse response = expenseImportService.importExpenses(request.getInputStream(), ndjson);
+        return ResponseEntity.ok(response);
     }
 
     @PutMapping("/{id}")
-    @Operation(summary = "Update an expense", description = "Updates an existing expense by ID")
-    public ResponseEntity<ExpenseResponse> updateExpense(
+    @Operation(summary = "Update an expense", description = "Updates an existing expense by ID. "
+            + "With If-Match, the update only applies if the expense is still at that ETag (412 otherwise)")
+    public CompletableFuture<ResponseEntity<ExpenseResponse>> updateExpense(
             @Parameter(description = "Expense ID") @PathVariable String id,
-            @Valid @RequestBody ExpenseRequest request) throws ExecutionException, InterruptedException {
-        ExpenseResponse response = expenseService.updateExpense(id, request);
-        return ResponseEntity.ok(response);
+            @Parameter(description = "ETag the update is based on")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody ExpenseRequest request) {
+        return expenseService.updateExpense(id, request, versionFromIfMatch(ifMatch))
+                .thenApply(response -> withETag(HttpStatus.OK, response));
+    }
+
+    @PatchMapping("/{id}")
+    @Operation(
+        summary = "Partially update an expense",
+        description = "Changes only the fields present in the body, e.g. {\"amount\": 12.5}; "
+                + "omitted fields keep their stored values. Honours If-Match like PUT"
+    )
+    public CompletableFuture<ResponseEntity<ExpenseResponse>> patchExpense(
+            @Parameter(description = "Expense ID") @PathVariable String id,
+            @Parameter(description = "ETag the update is based on")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody ExpensePatchRequest request) {
+        return expenseService.patchExpense(id, request, versionFromIfMatch(ifMatch))
+                .thenApply(response -> withETag(HttpStatus.OK, response));
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get expense by ID", description = "Retrieves a specific expense by its ID")
-    public ResponseEntity<ExpenseResponse> getExpenseById(
-            @Parameter(description = "Expense ID") @PathVariable String id) 
-            throws ExecutionException, InterruptedException {
-        ExpenseResponse response = expenseService.getExpenseById(id);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<ExpenseResponse>> getExpenseById(
+            @Parameter(description = "Expense ID") @PathVariable String id) {
+        return expenseService.getExpenseById(id).thenApply(response -> withETag(HttpStatus.OK, response));
     }
 
     @Operation(
@@ -152,42 +197,97 @@ public class ExpenseController {
                 )
             )
         ),
+        @ApiResponse(responseCode = "304", description = "Not modified since the ETag in If-None-Match"),
         @ApiResponse(responseCode = "401", description = "Not authenticated")
     })
     @GetMapping
-    public ResponseEntity<List<ExpenseResponse>> getAllExpenses() 
-            throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> responses = expenseService.getAllExpenses();
-        return ResponseEntity.ok(responses);
+    public CompletableFuture<ResponseEntity<List<ExpenseResponse>>> getAllExpenses(
+            @Parameter(description = "ETag of the copy the client already has")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return expenseService.getAllExpenses(ifNoneMatch).thenApply(ETags::toResponse);
+    }
+
+    @GetMapping("/batch")
+    @Operation(
+        summary = "Get several expenses by ID",
+        description = "Resolves up to " + ExpenseService.MAX_BATCH_GET_IDS + " expense IDs in a single read. "
+                + "Results follow the order of the IDs; IDs that do not exist or belong to another user are omitted.",
+        security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public CompletableFuture<ResponseEntity<List<ExpenseResponse>>> getExpensesByIds(
+            @Parameter(description = "Expense IDs, comma-separated or repeated")
+            @RequestParam List<String> ids) {
+        return expenseService.getExpensesByIds(ids).thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/page")
+    @Operation(
+        summary = "Get expenses page",
+        description = "Retrieves the current user's expenses one page at a time, newest first. "
+                + "Pass the returned nextPageToken to fetch the following page.",
+        security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public CompletableFuture<ResponseEntity<ExpensePageResponse>> getExpensesPage(
+            @Parameter(description = "Opaque token from a previous page; omit for the first page")
+            @RequestParam(required = false) String pageToken,
+            @Parameter(description = "Page size (default " + ExpenseService.DEFAULT_PAGE_SIZE
+                    + ", max " + ExpenseService.MAX_PAGE_SIZE + ")")
+            @RequestParam(required = false) Integer size) {
+        return expenseService.getExpensesPage(pageToken, size).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/category/{category}")
     @Operation(summary = "Get expenses by category", description = "Retrieves expenses filtered by category")
-    public ResponseEntity<List<ExpenseResponse>> getExpensesByCategory(
-            @Parameter(description = "Category name") @PathVariable String category) 
-            throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> responses = expenseService.getExpensesByCategory(category);
-        return ResponseEntity.ok(responses);
+    public CompletableFuture<ResponseEntity<List<ExpenseResponse>>> getExpensesByCategory(
+            @Parameter(description = "Category name") @PathVariable String category) {
+        return expenseService.getExpensesByCategory(category).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/date-range")
     @Operation(summary = "Get expenses by date range", description = "Retrieves expenses within a date range")
-    public ResponseEntity<List<ExpenseResponse>> getExpensesByDateRange(
+    public CompletableFuture<ResponseEntity<List<ExpenseResponse>>> getExpensesByDateRange(
             @Parameter(description = "Start date (yyyy-MM-dd'T'HH:mm:ss)")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @Parameter(description = "End date (yyyy-MM-dd'T'HH:mm:ss)")
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> responses = expenseService.getExpensesByDateRange(startDate, endDate);
-        return ResponseEntity.ok(responses);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return expenseService.getExpensesByDateRange(startDate, endDate).thenApply(ResponseEntity::ok);
     }
 
     @DeleteMapping("/{id}")
-    @Operation(summary = "Delete an expense", description = "Deletes an expense by ID")
-    public ResponseEntity<Void> deleteExpense(
-            @Parameter(description = "Expense ID") @PathVariable String id) 
-            throws ExecutionException, InterruptedException {
-        expenseService.deleteExpense(id);
-        return ResponseEntity.noContent().build();
+    @Operation(summary = "Delete an expense", description = "Deletes an expense by ID. Honours If-Match like PUT")
+    public CompletableFuture<ResponseEntity<Void>> deleteExpense(
+            @Parameter(description = "Expense ID") @PathVariable String id,
+            @Parameter(description = "ETag the delete is based on")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return expenseService.deleteExpense(id, versionFromIfMatch(ifMatch))
+                .thenApply(ignored -> ResponseEntity.noContent().<Void>build());
+    }
+
+    /**
+     * Single-expense responses carry the expense's version as a strong ETag, so clients can
+     * send it back in If-Match without re-reading the expense.
+     */
+    private static ResponseEntity<ExpenseResponse> withETag(HttpStatus status, ExpenseResponse response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status);
+        if (response.getVersion() != null) {
+            builder.eTag(response.getVersion());
+        }
+        return builder.body(response);
+    }
+
+    /**
+     * The version named by an If-Match header, or null when the request is unconditional.
+     * "*" only requires the expense to exist, which every write checks anyway. Only a single
+     * strong entity tag is supported; anything else cannot match.
+     */
+    private static String versionFromIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match must be a single strong entity tag");
+        }
+        return tag.substring(1, tag.length() - 1);
     }
 }
\ No newline at end of file
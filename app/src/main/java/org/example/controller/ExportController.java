@@ -10,10 +10,10 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.ExecutionException;
 
 @RestController
 @RequestMapping("/api/export")
@@ -25,9 +25,11 @@ public class ExportController {
     private ExportService exportService;
 
     @GetMapping("/json")
-    @Operation(summary = "Export expenses to JSON", description = "Exports all expenses in JSON format")
-    public ResponseEntity<String> exportToJson() throws ExecutionException, InterruptedException {
-        String jsonData = exportService.exportToJson();
+    @Operation(summary = "Export expenses to JSON", description = "Streams all expenses as a JSON array")
+    public ResponseEntity<StreamingResponseBody> exportToJson(
+            @Parameter(description = "Indent the output for readability")
+            @RequestParam(defaultValue = "false") boolean pretty) {
+        StreamingResponseBody jsonData = exportService.exportToJson(pretty);
         
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -39,14 +41,15 @@ public class ExportController {
     }
 
     @GetMapping("/json/date-range")
-    @Operation(summary = "Export expenses to JSON by date range", description = "Exports expenses within date range in JSON format")
-    public ResponseEntity<String> exportToJsonByDateRange(
+    @Operation(summary = "Export expenses to JSON by date range", description = "Streams expenses within date range as a JSON array")
+    public ResponseEntity<StreamingResponseBody> exportToJsonByDateRange(
             @Parameter(description = "Start date (yyyy-MM-dd'T'HH:mm:ss)")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @Parameter(description = "End date (yyyy-MM-dd'T'HH:mm:ss)")
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        String jsonData = exportService.exportToJsonByDateRange(startDate, endDate);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @Parameter(description = "Indent the output for readability")
+            @RequestParam(defaultValue = "false") boolean pretty) {
+        StreamingResponseBody jsonData = exportService.exportToJsonByDateRange(startDate, endDate, pretty);
         
         String filename = String.format("expenses_%s_to_%s.json", 
                 startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
@@ -61,10 +64,46 @@ public class ExportController {
                 .body(jsonData);
     }
 
+    @GetMapping("/ndjson")
+    @Operation(summary = "Export expenses to NDJSON", description = "Streams all expenses as newline-delimited JSON, one expense per line")
+    public ResponseEntity<StreamingResponseBody> exportToNdjson() {
+        StreamingResponseBody ndjsonData = exportService.exportToNdjson();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=expenses.ndjson");
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(ndjsonData);
+    }
+
+    @GetMapping("/ndjson/date-range")
+    @Operation(summary = "Export expenses to NDJSON by date range", description = "Streams expenses within date range as newline-delimited JSON")
+    public ResponseEntity<StreamingResponseBody> exportToNdjsonByDateRange(
+            @Parameter(description = "Start date (yyyy-MM-dd'T'HH:mm:ss)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @Parameter(description = "End date (yyyy-MM-dd'T'HH:mm:ss)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        StreamingResponseBody ndjsonData = exportService.exportToNdjsonByDateRange(startDate, endDate);
+
+        String filename = String.format("expenses_%s_to_%s.ndjson",
+                startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(ndjsonData);
+    }
+
     @GetMapping("/csv")
-    @Operation(summary = "Export expenses to CSV", description = "Exports all expenses in CSV format")
-    public ResponseEntity<String> exportToCsv() throws ExecutionException, InterruptedException {
-        String csvData = exportService.exportToCsv();
+    @Operation(summary = "Export expenses to CSV", description = "Streams all expenses in CSV format as they are read")
+    public ResponseEntity<StreamingResponseBody> exportToCsv() {
+        StreamingResponseBody csvData = exportService.exportToCsv();
         
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType("text/csv"));
@@ -76,14 +115,13 @@ public class ExportController {
     }
 
     @GetMapping("/csv/date-range")
-    @Operation(summary = "Export expenses to CSV by date range", description = "Exports expenses within date range in CSV format")
-    public ResponseEntity<String> exportToCsvByDateRange(
+    @Operation(summary = "Export expenses to CSV by date range", description = "Streams expenses within date range in CSV format")
+    public ResponseEntity<StreamingResponseBody> exportToCsvByDateRange(
             @Parameter(description = "Start date (yyyy-MM-dd'T'HH:mm:ss)")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @Parameter(description = "End date (yyyy-MM-dd'T'HH:mm:ss)")
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        String csvData = exportService.exportToCsvByDateRange(startDate, endDate);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        StreamingResponseBody csvData = exportService.exportToCsvByDateRange(startDate, endDate);
         
         String filename = String.format("expenses_%s_to_%s.csv", 
                 startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
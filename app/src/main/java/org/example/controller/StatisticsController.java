@@ -4,13 +4,19 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.example.dto.StatisticsResponse;
+import org.example.model.MonthlyRollup;
+import org.example.service.ExpenseRollupService;
 import org.example.service.ExpenseService;
+import org.example.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @RestController
@@ -22,23 +28,31 @@ public class StatisticsController {
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private ExpenseRollupService expenseRollupService;
+
     @GetMapping
-    @Operation(summary = "Get overall statistics", description = "Retrieves overall expense statistics")
-    public ResponseEntity<StatisticsResponse> getStatistics() 
-            throws ExecutionException, InterruptedException {
-        StatisticsResponse response = expenseService.getStatistics();
-        return ResponseEntity.ok(response);
+    @Operation(summary = "Get overall statistics", description = "Retrieves overall expense statistics. "
+            + "Responds 304 when If-None-Match names the current ETag")
+    public CompletableFuture<ResponseEntity<StatisticsResponse>> getStatistics(
+            @Parameter(description = "ETag of the copy the client already has")
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return expenseService.getStatistics(ifNoneMatch).thenApply(ETags::toResponse);
     }
 
     @GetMapping("/date-range")
     @Operation(summary = "Get statistics by date range", description = "Retrieves expense statistics within a date range")
-    public ResponseEntity<StatisticsResponse> getStatisticsByDateRange(
+    public CompletableFuture<ResponseEntity<StatisticsResponse>> getStatisticsByDateRange(
             @Parameter(description = "Start date (yyyy-MM-dd'T'HH:mm:ss)")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @Parameter(description = "End date (yyyy-MM-dd'T'HH:mm:ss)")
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        StatisticsResponse response = expenseService.getStatisticsByDateRange(startDate, endDate);
-        return ResponseEntity.ok(response);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        return expenseService.getStatisticsByDateRange(startDate, endDate).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @Operation(summary = "Rebuild monthly rollups", description = "Recomputes the current user's monthly rollups from their expenses")
+    public ResponseEntity<List<MonthlyRollup>> rebuildRollups() throws ExecutionException, InterruptedException {
+        return ResponseEntity.ok(expenseRollupService.rebuildCurrentUser());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResponse {
+    private int received;
+    private int imported;
+    private int failed;
+    private long elapsedMs;
+    private List<RowError> errors; // first errors only, see truncatedErrors
+    private boolean truncatedErrors;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private int row; // 1-based position in the request body
+        private String message;
+    }
+}
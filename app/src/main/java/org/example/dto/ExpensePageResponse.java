@@ -0,0 +1,17 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpensePageResponse {
+    private List<ExpenseResponse> expenses;
+    private String nextPageToken; // null when there are no more pages
+    private int size;
+    private boolean hasMore;
+}
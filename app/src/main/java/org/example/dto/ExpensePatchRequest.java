@@ -0,0 +1,30 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import java.time.LocalDateTime;
+
+/**
+ * Partial update of an expense: only the fields present (non-null) are changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpensePatchRequest {
+    @Pattern(regexp = "(?s).*\\S.*", message = "Title must not be blank")
+    private String title;
+
+    private String description;
+
+    @Positive(message = "Amount must be positive")
+    private Double amount;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "Category must not be blank")
+    private String category;
+
+    private LocalDateTime date;
+}
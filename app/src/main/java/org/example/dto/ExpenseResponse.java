@@ -1,5 +1,6 @@
 package org.example.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,4 +20,8 @@ public class ExpenseResponse {
     private String userId;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    // Sent as the ETag header of single-expense responses rather than in the body
+    @JsonIgnore
+    private String version;
 }
\ No newline at end of file
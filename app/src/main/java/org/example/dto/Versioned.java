@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A response body with its ETag. The body is null when the client's copy, named by
+ * If-None-Match, is still current and was therefore not recomputed.
+ */
+@Data
+@AllArgsConstructor
+public class Versioned<T> {
+    private String etag;
+    private T body;
+
+    public boolean isModified() {
+        return body != null;
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.exception;
+
+/**
+ * A conditional request (If-Match) named a version that is no longer current.
+ * Reported as 412 Precondition Failed.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
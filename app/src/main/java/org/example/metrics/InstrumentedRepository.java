@@ -0,0 +1,154 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.repository.ExpenseBulkWriter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Times every call of a repository interface as {@code repository.calls}, tagged with the
+ * collection, the operation (the method name, without an Async suffix) and the outcome, and
+ * records the documents each read returns as {@code repository.documents}. Async calls are
+ * timed until their future completes, streams from opening until they are closed.
+ * <p>
+ * Calls also count towards the current {@link RequestStats}, which is made current again
+ * while the returned future completes, so that the calls a request chains onto it are
+ * attributed to the same request.
+ */
+public class InstrumentedRepository implements InvocationHandler {
+
+    private final Object target;
+    private final String collection;
+    private final MeterRegistry registry;
+    private final Map<Method, Operation> operations = new ConcurrentHashMap<>();
+
+    private InstrumentedRepository(Object target, String collection, MeterRegistry registry) {
+        this.target = target;
+        this.collection = collection;
+        this.registry = registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T instrument(T target, Class<T> repositoryInterface, String collection, MeterRegistry registry) {
+        return (T) Proxy.newProxyInstance(repositoryInterface.getClassLoader(), new Class<?>[]{repositoryInterface},
+                new InstrumentedRepository(target, collection, registry));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        // The bulk writer's creates are timed as the writes they turn into, not here
+        if (method.getDeclaringClass() == Object.class || ExpenseBulkWriter.class.isAssignableFrom(method.getReturnType())) {
+            return invokeTarget(method, args);
+        }
+        Operation operation = operations.computeIfAbsent(method, Operation::new);
+        RequestStats request = RequestStats.current();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invokeTarget(method, args);
+        } catch (Throwable e) {
+            operation.record(start, 0, true, request);
+            throw e;
+        }
+
+        if (result instanceof CompletableFuture<?> future) {
+            CompletableFuture<Object> completion = new CompletableFuture<>();
+            future.whenComplete((value, error) -> {
+                operation.record(start, count(value), error != null, request);
+                RequestStats.complete(request, completion, value, error);
+            });
+            return completion;
+        }
+        if (result instanceof Stream<?> stream) {
+            LongAdder documents = new LongAdder();
+            return stream.peek(document -> documents.increment())
+                    .onClose(() -> operation.record(start, documents.sum(), false, request));
+        }
+        operation.record(start, count(result), false, request);
+        return result;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class Operation {
+        private final String name;
+        private final Timer success;
+        private final Timer error;
+        private final DistributionSummary documents;
+
+        Operation(Method method) {
+            String operation = method.getName().endsWith("Async")
+                    ? method.getName().substring(0, method.getName().length() - "Async".length())
+                    : method.getName();
+            name = collection + "." + operation;
+            success = timer(operation, "success");
+            error = timer(operation, "error");
+            documents = isRead(operation)
+                    ? DistributionSummary.builder("repository.documents")
+                            .description("Documents returned by a repository read")
+                            .tag("collection", collection)
+                            .tag("operation", operation)
+                            .register(registry)
+                    : null;
+        }
+
+        void record(long start, long count, boolean failed, RequestStats request) {
+            long nanos = System.nanoTime() - start;
+            (failed ? error : success).record(nanos, TimeUnit.NANOSECONDS);
+            long read = 0;
+            if (documents != null && !failed) {
+                read = count;
+                documents.record(read);
+            }
+            if (request != null) {
+                request.recordCall(name, start, nanos, read);
+            }
+        }
+
+        private Timer timer(String operation, String outcome) {
+            return Timer.builder("repository.calls")
+                    .description("Repository calls")
+                    .tag("collection", collection)
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+    private static boolean isRead(String operation) {
+        return operation.startsWith("find") || operation.startsWith("stream")
+                || operation.startsWith("exists") || operation.startsWith("aggregate");
+    }
+
+    private static long count(Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return 0;
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the request being handled has cost so far: repository calls, backend round trips
+ * and named phases such as JWT verification. Bound to the handling thread by
+ * {@link RequestStatsFilter} and carried along the request's CompletableFuture chains by
+ * {@link InstrumentedRepository} and the backend adapters; calls complete on other threads,
+ * so everything here is thread-safe.
+ */
+public class RequestStats {
+
+    public static final String ATTRIBUTE = RequestStats.class.getName();
+
+    // Enough of the call sequence to spot an N+1 pattern in the slow request log
+    static final int MAX_LOGGED_CALLS = 50;
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder repositoryCalls = new LongAdder();
+    private final LongAdder documentsRead = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder roundTripNanos = new LongAdder();
+    private final Map<String, Totals> callTotals = new ConcurrentHashMap<>();
+    private final Map<String, Totals> phaseTotals = new ConcurrentHashMap<>();
+    private final Queue<Call> calls = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger loggedCalls = new AtomicInteger();
+    private final AtomicBoolean serverTimingSent = new AtomicBoolean();
+
+    /**
+     * The stats of the request this thread is working for, or {@code null} outside a request.
+     */
+    public static RequestStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes {@code stats} current on this thread and returns what was current before, to be
+     * passed to {@link #restore}.
+     */
+    static RequestStats bind(RequestStats stats) {
+        RequestStats previous = CURRENT.get();
+        CURRENT.set(stats);
+        return previous;
+    }
+
+    static void restore(RequestStats previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Completes {@code future} with {@code stats} current, so that the stages chained on it run
+     * on behalf of the same request, whichever thread completes it.
+     */
+    public static <T> void complete(RequestStats stats, CompletableFuture<T> future, T value, Throwable error) {
+        RequestStats previous = stats != null ? bind(stats) : null;
+        try {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        } finally {
+            if (stats != null) {
+                restore(previous);
+            }
+        }
+    }
+
+    /**
+     * Adds the time spent in a phase of the current request, if there is one.
+     */
+    public static void recordPhase(String phase, long nanos) {
+        RequestStats stats = current();
+        if (stats != null) {
+            stats.phaseTotals.computeIfAbsent(phase, key -> new Totals()).add(nanos, 0);
+        }
+    }
+
+    /**
+     * Counts one request to the storage backend, which a repository call may make several of.
+     */
+    public void recordRoundTrip(long nanos) {
+        roundTrips.increment();
+        roundTripNanos.add(nanos);
+    }
+
+    void recordCall(String name, long callStartNanos, long nanos, long documents) {
+        repositoryCalls.increment();
+        documentsRead.add(documents);
+        callTotals.computeIfAbsent(name, key -> new Totals()).add(nanos, documents);
+        if (loggedCalls.incrementAndGet() <= MAX_LOGGED_CALLS) {
+            calls.add(new Call(name, callStartNanos - startNanos, nanos, documents));
+        }
+    }
+
+    /**
+     * True the first time it is called, so the Server-Timing header is added only once.
+     */
+    boolean markServerTimingSent() {
+        return serverTimingSent.compareAndSet(false, true);
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long getRepositoryCalls() {
+        return repositoryCalls.sum();
+    }
+
+    public long getDocumentsRead() {
+        return documentsRead.sum();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    public long getRoundTripNanos() {
+        return roundTripNanos.sum();
+    }
+
+    /**
+     * Totals per repository call, named collection.operation, in the order first completed.
+     */
+    public Map<String, Totals> getCallTotals() {
+        return sorted(callTotals);
+    }
+
+    public Map<String, Totals> getPhaseTotals() {
+        return sorted(phaseTotals);
+    }
+
+    /**
+     * The first {@value #MAX_LOGGED_CALLS} repository calls, in the order they completed.
+     */
+    public List<Call> getCalls() {
+        return new ArrayList<>(calls);
+    }
+
+    private static Map<String, Totals> sorted(Map<String, Totals> totals) {
+        Map<String, Totals> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.firstNanos, b.firstNanos)))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    /**
+     * One repository call: when it started relative to the request, how long it took and
+     * how many documents it returned.
+     */
+    public record Call(String name, long offsetNanos, long nanos, long documents) {
+    }
+
+    public static final class Totals {
+        private final long firstNanos = System.nanoTime();
+        private long count;
+        private long nanos;
+        private long maxNanos;
+        private long documents;
+
+        synchronized void add(long callNanos, long callDocuments) {
+            count++;
+            nanos += callNanos;
+            maxNanos = Math.max(maxNanos, callNanos);
+            documents += callDocuments;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getNanos() {
+            return nanos;
+        }
+
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public synchronized long getDocuments() {
+            return documents;
+        }
+    }
+}
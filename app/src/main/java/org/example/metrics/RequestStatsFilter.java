@@ -0,0 +1,231 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a {@link RequestStats} current for each request and, once the response is complete,
+ * records the documents it read as {@code http.server.requests.documents}, tagged like
+ * {@code http.server.requests} with the method and URI template.
+ * <p>
+ * The totals so far are sent as a Server-Timing header when the response is committed: for
+ * a streamed export that is before the rows are read. Requests that take longer than the
+ * slow request threshold, or make more backend round trips than the budget, are logged
+ * with each repository call once complete.
+ * <p>
+ * Runs on every dispatch of an async request, and its {@link #asyncInterceptor()} on the
+ * thread that writes a streamed response, so the stats follow the request across threads.
+ */
+public class RequestStatsFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestStatsFilter.class);
+
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private final MeterRegistry registry;
+    private final boolean serverTiming;
+    private final long slowRequestNanos;
+    private final long maxRoundTrips;
+    // One summary per method and URI template, registered on first use
+    private final Map<String, DistributionSummary> documentsSummaries = new ConcurrentHashMap<>();
+
+    /**
+     * @param slowRequestMillis log requests slower than this; 0 disables
+     * @param maxRoundTrips     log requests with more backend round trips than this; 0 disables
+     */
+    public RequestStatsFilter(MeterRegistry registry, boolean serverTiming, long slowRequestMillis,
+                              long maxRoundTrips) {
+        this.registry = registry;
+        this.serverTiming = serverTiming;
+        this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMillis);
+        this.maxRoundTrips = maxRoundTrips;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RequestStats stats = (RequestStats) request.getAttribute(RequestStats.ATTRIBUTE);
+        if (stats == null) {
+            stats = new RequestStats();
+            request.setAttribute(RequestStats.ATTRIBUTE, stats);
+        }
+        RequestStats previous = RequestStats.bind(stats);
+        try {
+            filterChain.doFilter(request, serverTiming ? new ServerTimingResponse(response, stats) : response);
+        } finally {
+            RequestStats.restore(previous);
+            // An async request is complete after its last dispatch, which starts no further work
+            if (!request.isAsyncStarted()) {
+                if (serverTiming && !response.isCommitted() && stats.markServerTimingSent()) {
+                    response.setHeader(SERVER_TIMING, serverTiming(stats));
+                }
+                record(request, response, stats);
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    /**
+     * Binds the request's stats around Callable and StreamingResponseBody processing.
+     */
+    public CallableProcessingInterceptor asyncInterceptor() {
+        return new CallableProcessingInterceptor() {
+            private final ThreadLocal<RequestStats> previous = new ThreadLocal<>();
+
+            @Override
+            public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+                RequestStats stats = (RequestStats) request.getAttribute(RequestStats.ATTRIBUTE,
+                        RequestAttributes.SCOPE_REQUEST);
+                if (stats != null) {
+                    previous.set(RequestStats.bind(stats));
+                }
+            }
+
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+                if (request.getAttribute(RequestStats.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+                    RequestStats.restore(previous.get());
+                    previous.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Formats the totals as Server-Timing metrics, durations in milliseconds: the request so
+     * far, each phase, each repository operation and the backend round trips.
+     */
+    static String serverTiming(RequestStats stats) {
+        StringJoiner header = new StringJoiner(", ");
+        header.add("total;dur=" + millis(stats.getElapsedNanos()));
+        stats.getPhaseTotals().forEach((phase, totals) ->
+                header.add(phase + ";dur=" + millis(totals.getNanos())));
+        stats.getCallTotals().forEach((call, totals) ->
+                header.add(call + ";dur=" + millis(totals.getNanos())
+                        + ";desc=\"" + plural(totals.getCount(), "call") + ", "
+                        + plural(totals.getDocuments(), "doc") + "\""));
+        header.add("backend;dur=" + millis(stats.getRoundTripNanos())
+                + ";desc=\"" + plural(stats.getRoundTrips(), "round trip") + "\"");
+        return header.toString();
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        documentsSummary(request.getMethod(), pattern != null ? pattern.toString() : "UNKNOWN")
+                .record(stats.getDocumentsRead());
+
+        long elapsed = stats.getElapsedNanos();
+        boolean slow = slowRequestNanos > 0 && elapsed > slowRequestNanos;
+        boolean overBudget = maxRoundTrips > 0 && stats.getRoundTrips() > maxRoundTrips;
+        if ((slow || overBudget) && logger.isWarnEnabled()) {
+            logger.warn("Slow request: method={} uri={} status={} reason={} duration_ms={} round_trips={} "
+                            + "round_trip_ms={} repository_calls={} documents={} phases={} calls={}",
+                    request.getMethod(), request.getRequestURI(), response.getStatus(),
+                    slow && overBudget ? "duration,round_trips" : slow ? "duration" : "round_trips",
+                    millis(elapsed), stats.getRoundTrips(), millis(stats.getRoundTripNanos()),
+                    stats.getRepositoryCalls(), stats.getDocumentsRead(), phases(stats), calls(stats));
+        }
+    }
+
+    private DistributionSummary documentsSummary(String method, String uri) {
+        return documentsSummaries.computeIfAbsent(method + " " + uri, key ->
+                DistributionSummary.builder("http.server.requests.documents")
+                        .description("Repository documents read per request")
+                        .tag("method", method)
+                        .tag("uri", uri)
+                        .register(registry));
+    }
+
+    private static String phases(RequestStats stats) {
+        StringJoiner phases = new StringJoiner(", ", "{", "}");
+        for (Map.Entry<String, RequestStats.Totals> entry : stats.getPhaseTotals().entrySet()) {
+            phases.add(entry.getKey() + "=" + millis(entry.getValue().getNanos()) + "ms"
+                    + (entry.getValue().getCount() > 1 ? " x" + entry.getValue().getCount() : ""));
+        }
+        return phases.toString();
+    }
+
+    // Each call with its start relative to the request, so sequential calls stand out
+    private static String calls(RequestStats stats) {
+        StringJoiner calls = new StringJoiner(", ", "[", "]");
+        for (RequestStats.Call call : stats.getCalls()) {
+            calls.add("+" + millis(call.offsetNanos()) + "ms " + call.name() + " " + millis(call.nanos()) + "ms "
+                    + plural(call.documents(), "doc"));
+        }
+        long omitted = stats.getRepositoryCalls() - RequestStats.MAX_LOGGED_CALLS;
+        if (omitted > 0) {
+            calls.add(omitted + " more");
+        }
+        return calls.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    private static String plural(long count, String noun) {
+        return count + " " + noun + (count == 1 ? "" : "s");
+    }
+
+    /**
+     * Adds the Server-Timing header just before the response is committed, which is the last
+     * moment a header can be added.
+     */
+    private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+        private final RequestStats stats;
+
+        private ServerTimingResponse(HttpServletResponse response, RequestStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        private void addServerTiming() {
+            if (!isCommitted() && stats.markServerTimingSent()) {
+                setHeader(SERVER_TIMING, serverTiming(stats));
+            }
+        }
+    }
+}
@@ -19,4 +19,5 @@ public class Expense {
     private String userId; // For future user management
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private String version; // Firestore update time of the stored document; not itself stored
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package org.example.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Pre-aggregated totals of one user's expenses in one calendar month, stored at
+ * users/{userId}/rollups/{yyyy-MM} and kept current as expenses are written.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyRollup {
+
+    public static final String UNCATEGORIZED = "Uncategorized";
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private String month;
+    private double total;
+    private long count;
+    private Map<String, Double> categories = new HashMap<>();
+
+    public static String monthOf(LocalDateTime date) {
+        return date.format(MONTH_FORMAT);
+    }
+
+    public static String categoryOf(Expense expense) {
+        return expense.getCategory() != null ? expense.getCategory() : UNCATEGORIZED;
+    }
+
+    /**
+     * Rollups of the given expenses, one per month that has any, in month order. Expenses
+     * without a date belong to no month and are left out.
+     */
+    public static List<MonthlyRollup> summarize(Stream<Expense> expenses) {
+        Map<String, MonthlyRollup> byMonth = new TreeMap<>();
+        expenses.forEachOrdered(expense -> {
+            if (expense.getDate() == null) {
+                return;
+            }
+            double amount = expense.getAmount() != null ? expense.getAmount() : 0.0;
+            MonthlyRollup rollup = byMonth.computeIfAbsent(monthOf(expense.getDate()),
+                    month -> new MonthlyRollup(month, 0.0, 0L, new TreeMap<>()));
+            rollup.setTotal(rollup.getTotal() + amount);
+            rollup.setCount(rollup.getCount() + 1);
+            rollup.getCategories().merge(categoryOf(expense), amount, Double::sum);
+        });
+        return new ArrayList<>(byMonth.values());
+    }
+}
@@ -1,67 +1,66 @@
 package org.example.repository;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
 import org.example.model.Category;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
-@Repository
-public class CategoryRepository {
+/**
+ * Storage for the shared expense categories and their version counter.
+ */
+public interface CategoryRepository {
 
-    private static final String COLLECTION_NAME = "categories";
-
-    @Autowired
-    private Firestore firestore;
+    default String save(Category category) throws ExecutionException, InterruptedException {
+        return saveAsync(category).get();
+    }
 
-    public String save(Category category) throws ExecutionException, InterruptedException {
-        if (category.getId() == null || category.getId().isEmpty()) {
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
-            category.setId(docRef.getId());
-        }
-        
-        ApiFuture<WriteResult> result = firestore.collection(COLLECTION_NAME)
-                .document(category.getId()).set(category);
-        result.get();
-        return category.getId();
+    default Category findById(String id) throws ExecutionException, InterruptedException {
+        return findByIdAsync(id).get();
     }
 
-    public Category findById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
-        
-        if (document.exists()) {
-            return document.toObject(Category.class);
-        }
-        return null;
+    default List<Category> findAll() throws ExecutionException, InterruptedException {
+        return findAllAsync().get();
     }
 
-    public List<Category> findAll() throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = firestore.collection(COLLECTION_NAME).get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<Category> categories = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            Category category = document.toObject(Category.class);
-            categories.add(category);
-        }
-        return categories;
+    default boolean deleteById(String id) throws ExecutionException, InterruptedException {
+        return deleteByIdAsync(id).get();
     }
 
-    public void deleteById(String id) throws ExecutionException, InterruptedException {
-        ApiFuture<WriteResult> writeResult = firestore.collection(COLLECTION_NAME).document(id).delete();
-        writeResult.get();
+    /**
+     * A counter bumped by every category write, for cheap change detection.
+     */
+    default long findVersion() throws ExecutionException, InterruptedException {
+        return findVersionAsync().get();
     }
 
-    public boolean existsById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
-        return document.exists();
+    default boolean existsById(String id) throws ExecutionException, InterruptedException {
+        return existsByIdAsync(id).get();
     }
-}
\ No newline at end of file
+
+    // Non-blocking variants
+
+    /**
+     * Creates or overwrites the category, assigning an id if it has none. Completes with the id.
+     */
+    CompletableFuture<String> saveAsync(Category category);
+
+    /**
+     * Replaces the fields of an existing category. Completes with the category as written,
+     * or {@code null} if there is no category with its id.
+     */
+    CompletableFuture<Category> updateAsync(Category category);
+
+    CompletableFuture<Category> findByIdAsync(String id);
+
+    CompletableFuture<List<Category>> findAllAsync();
+
+    /**
+     * Completes with {@code false} if there was no category to delete.
+     */
+    CompletableFuture<Boolean> deleteByIdAsync(String id);
+
+    CompletableFuture<Long> findVersionAsync();
+
+    CompletableFuture<Boolean> existsByIdAsync(String id);
+}
@@ -0,0 +1,23 @@
+package org.example.repository;
+
+import org.example.model.Expense;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Buffered writer for loading many expenses at once. Writes are batched and sent
+ * in the background; each returned future completes with the new expense id once
+ * its row is committed. {@link #close()} flushes and waits for outstanding writes.
+ */
+public interface ExpenseBulkWriter extends AutoCloseable {
+
+    CompletableFuture<String> create(Expense expense);
+
+    /**
+     * Fails with an ExecutionException if the flush fails, or if the thread is interrupted
+     * while waiting; the interrupt flag is then set again.
+     */
+    @Override
+    void close() throws ExecutionException;
+}
@@ -1,116 +1,208 @@
 package org.example.repository;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
 import org.example.model.Expense;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Repository;
+import org.example.model.MonthlyRollup;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-@Repository
-public class ExpenseRepository {
-
-    private static final String COLLECTION_NAME = "expenses";
-
-    @Autowired
-    private Firestore firestore;
-
-    public String save(Expense expense) throws ExecutionException, InterruptedException {
-        if (expense.getId() == null || expense.getId().isEmpty()) {
-            // Create new document
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
-            expense.setId(docRef.getId());
-            expense.setCreatedAt(LocalDateTime.now());
-        }
-        expense.setUpdatedAt(LocalDateTime.now());
-        
-        ApiFuture<WriteResult> result = firestore.collection(COLLECTION_NAME)
-                .document(expense.getId()).set(expense);
-        result.get();
-        return expense.getId();
-    }
-
-    public Expense findById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
-        
-        if (document.exists()) {
-            return document.toObject(Expense.class);
-        }
-        return null;
-    }
-
-    public List<Expense> findAll() throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = firestore.collection(COLLECTION_NAME).get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<Expense> expenses = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            Expense expense = document.toObject(Expense.class);
-            expenses.add(expense);
-        }
-        return expenses;
-    }
-
-    public List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
-        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<Expense> expenses = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            Expense expense = document.toObject(Expense.class);
-            expenses.add(expense);
-        }
-        return expenses;
-    }
-
-    public List<Expense> findByCategory(String category) throws ExecutionException, InterruptedException {
-        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("category", category);
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<Expense> expenses = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            Expense expense = document.toObject(Expense.class);
-            expenses.add(expense);
-        }
-        return expenses;
-    }
-
-    public List<Expense> findByDateRange(LocalDateTime startDate, LocalDateTime endDate) 
+/**
+ * Storage for expenses, their monthly rollups and their version counters. The Firestore
+ * implementation is the default; the "memory" and "disk" profiles select local ones.
+ *
+ * <p>Every write that adds, changes or removes an expense keeps the owner's monthly rollups
+ * consistent with it, once they have been built, and bumps the owner's version counter.
+ */
+public interface ExpenseRepository {
+
+    default String save(Expense expense) throws ExecutionException, InterruptedException {
+        return saveAsync(expense).get();
+    }
+
+    default Expense findById(String id) throws ExecutionException, InterruptedException {
+        return findByIdAsync(id).get();
+    }
+
+    default List<Expense> findAll() throws ExecutionException, InterruptedException {
+        return findAllAsync().get();
+    }
+
+    /**
+     * The expenses with the given ids, in the order given, with missing ids left out.
+     */
+    default List<Expense> findAllById(List<String> ids) throws ExecutionException, InterruptedException {
+        return findAllByIdAsync(ids).get();
+    }
+
+    default List<Expense> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        return findByUserIdAsync(userId).get();
+    }
+
+    /**
+     * Reads one page of a user's expenses ordered by date then id (both descending),
+     * resuming after the given cursor.
+     */
+    default List<Expense> findPageByUserId(String userId, LocalDateTime afterDate, String afterId, int limit)
+            throws ExecutionException, InterruptedException {
+        return findPageByUserIdAsync(userId, afterDate, afterId, limit).get();
+    }
+
+    default List<Expense> findByCategory(String category) throws ExecutionException, InterruptedException {
+        return findByCategoryAsync(category).get();
+    }
+
+    /**
+     * A user's expenses within [startDate, endDate], newest first.
+     */
+    default List<Expense> findByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate)
+            throws ExecutionException, InterruptedException {
+        return findByUserIdAndDateRangeAsync(userId, startDate, endDate).get();
+    }
+
+    /**
+     * Count, sum and average of a user's expense amounts. Dates are optional bounds.
+     */
+    default ExpenseTotals aggregateByUserId(String userId, LocalDateTime startDate, LocalDateTime endDate)
             throws ExecutionException, InterruptedException {
-        Query query = firestore.collection(COLLECTION_NAME)
-                .whereGreaterThanOrEqualTo("date", startDate)
-                .whereLessThanOrEqualTo("date", endDate)
-                .orderBy("date", Query.Direction.DESCENDING);
-        
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<Expense> expenses = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            Expense expense = document.toObject(Expense.class);
-            expenses.add(expense);
-        }
-        return expenses;
-    }
-
-    public void deleteById(String id) throws ExecutionException, InterruptedException {
-        ApiFuture<WriteResult> writeResult = firestore.collection(COLLECTION_NAME).document(id).delete();
-        writeResult.get();
-    }
-
-    public boolean existsById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
-        return document.exists();
-    }
-}
\ No newline at end of file
+        return aggregateByUserIdAsync(userId, startDate, endDate).get();
+    }
+
+    /**
+     * A user's expenses with only category, amount and date populated, for breakdowns that
+     * aggregation cannot group.
+     */
+    default List<Expense> findSummariesByUserId(String userId, LocalDateTime startDate, LocalDateTime endDate)
+            throws ExecutionException, InterruptedException {
+        return findSummariesByUserIdAsync(userId, startDate, endDate).get();
+    }
+
+    default void deleteById(String id) throws ExecutionException, InterruptedException {
+        deleteByIdAsync(id).get();
+    }
+
+    /**
+     * The user's monthly rollups, or {@code null} until {@link #replaceRollupsAsync} has
+     * built them: before that they may be missing the older expenses.
+     */
+    default List<MonthlyRollup> findRollupsByUserId(String userId) throws ExecutionException, InterruptedException {
+        return findRollupsByUserIdAsync(userId).get();
+    }
+
+    /**
+     * A counter bumped by every write to the user's expenses, for cheap change detection.
+     */
+    default long findVersionByUserId(String userId) throws ExecutionException, InterruptedException {
+        return findVersionByUserIdAsync(userId).get();
+    }
+
+    default boolean existsById(String id) throws ExecutionException, InterruptedException {
+        return existsByIdAsync(id).get();
+    }
+
+    // Streaming reads: callers must close the returned stream
+
+    /**
+     * All of a user's expenses, newest first.
+     */
+    default Stream<Expense> streamByUserId(String userId) {
+        return streamByUserIdAndDateRange(userId, null, null);
+    }
+
+    /**
+     * A user's expenses within the optional date bounds, newest first.
+     */
+    Stream<Expense> streamByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Like {@link #findSummariesByUserId} but streamed.
+     */
+    Stream<Expense> streamSummariesByUserId(String userId);
+
+    // Non-blocking variants
+
+    CompletableFuture<String> saveAsync(Expense expense);
+
+    /**
+     * Creates the expense, setting its id, timestamps and version. Completes with the
+     * expense as written.
+     */
+    CompletableFuture<Expense> createAsync(Expense expense);
+
+    // Conditional writes: expectedVersion, when not null, is the version (see Expense#getVersion)
+    // the caller last saw. If the stored expense is at a different version, or changes before
+    // the write lands, the write fails with PreconditionFailedException.
+
+    /**
+     * Reads the expense, applies the mutation and writes it back. The mutation sees
+     * {@code null} if the expense does not exist and may throw to abort; it may run more
+     * than once if the expense changes concurrently.
+     */
+    CompletableFuture<Expense> updateAsync(String id, String expectedVersion, Consumer<Expense> mutation);
+
+    /**
+     * Applies the non-null fields of {@code changes}, leaving the others as stored. The check
+     * sees the current expense ({@code null} if missing) and may throw to abort. Completes
+     * with the expense as written.
+     */
+    CompletableFuture<Expense> patchAsync(String id, String expectedVersion, Expense changes, Consumer<Expense> check);
+
+    /**
+     * Deletes the expense. The check sees the current expense ({@code null} if missing) and
+     * may throw to abort the delete.
+     */
+    CompletableFuture<Void> deleteAsync(String id, String expectedVersion, Consumer<Expense> check);
+
+    CompletableFuture<Expense> findByIdAsync(String id);
+
+    CompletableFuture<List<Expense>> findAllAsync();
+
+    CompletableFuture<List<Expense>> findAllByIdAsync(List<String> ids);
+
+    CompletableFuture<List<Expense>> findByUserIdAsync(String userId);
+
+    CompletableFuture<List<Expense>> findPageByUserIdAsync(String userId, LocalDateTime afterDate,
+                                                          String afterId, int limit);
+
+    CompletableFuture<List<Expense>> findByCategoryAsync(String category);
+
+    CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, LocalDateTime startDate,
+                                                                  LocalDateTime endDate);
+
+    CompletableFuture<ExpenseTotals> aggregateByUserIdAsync(String userId, LocalDateTime startDate,
+                                                           LocalDateTime endDate);
+
+    CompletableFuture<List<Expense>> findSummariesByUserIdAsync(String userId, LocalDateTime startDate,
+                                                               LocalDateTime endDate);
+
+    /**
+     * {@link #aggregateByUserIdAsync} and {@link #findSummariesByUserIdAsync} in one, read from
+     * the same snapshot so that the totals describe exactly the summarized expenses.
+     */
+    CompletableFuture<ExpenseSummaries> aggregateWithSummariesByUserIdAsync(String userId, LocalDateTime startDate,
+                                                                            LocalDateTime endDate);
+
+    default CompletableFuture<Void> deleteByIdAsync(String id) {
+        return deleteAsync(id, null, current -> { });
+    }
+
+    CompletableFuture<List<MonthlyRollup>> findRollupsByUserIdAsync(String userId);
+
+    /**
+     * Overwrites a user's rollups with the given ones and removes rollups for months that no
+     * longer have expenses, then marks the user's rollups as built. Used to backfill and to
+     * repair drift. {@code version} is the user's version counter as read before the expenses
+     * the rollups were computed from; months written since then are recounted rather than
+     * overwritten with stale totals.
+     */
+    CompletableFuture<Void> replaceRollupsAsync(String userId, List<MonthlyRollup> rollups, long version);
+
+    CompletableFuture<Long> findVersionByUserIdAsync(String userId);
+
+    CompletableFuture<Boolean> existsByIdAsync(String id);
+
+    ExpenseBulkWriter openBulkWriter();
+}
@@ -0,0 +1,20 @@
+package org.example.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.model.Expense;
+
+import java.util.List;
+
+/**
+ * Aggregated totals of a user's expenses together with their summaries (category, amount and
+ * date only), both read from the same snapshot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseSummaries {
+    private ExpenseTotals totals;
+    private List<Expense> expenses;
+}
@@ -0,0 +1,17 @@
+package org.example.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of an aggregation query over a user's expense amounts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseTotals {
+    private long count;
+    private double sum;
+    private double average;
+}
@@ -0,0 +1,33 @@
+package org.example.repository;
+
+import org.example.model.User;
+
+/**
+ * Published by {@link UserRepository} after a user document has been written or deleted,
+ * so in-process copies of that user can be dropped.
+ */
+public class UserChangedEvent {
+
+    private final String userId;
+    private final User user;
+
+    public UserChangedEvent(String userId, User user) {
+        this.userId = userId;
+        this.user = user;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * The user as written, or {@code null} if it was deleted.
+     */
+    public User getUser() {
+        return user;
+    }
+
+    public boolean isDeleted() {
+        return user == null;
+    }
+}
@@ -1,111 +1,114 @@
 package org.example.repository;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
-import org.example.dto.FirebaseUser;
 import org.example.model.User;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
-@Repository
-public class UserRepository {
+/**
+ * Storage for users. Usernames and emails are unique, compared case-insensitively.
+ * Saves and deletes publish {@link UserChangedEvent}.
+ */
+public interface UserRepository {
 
-    private static final String COLLECTION_NAME = "users";
-
-    @Autowired
-    private Firestore firestore;
-
-    public String save(User user) throws ExecutionException, InterruptedException {
-        if (user.getId() == null || user.getId().isEmpty()) {
-            // Create new document
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
-            user.setId(docRef.getId());
-            user.setCreatedAt(LocalDateTime.now());
-        }
-        user.setUpdatedAt(LocalDateTime.now());
-        
-        // Convert to FirebaseUser to handle Timestamp conversion
-        FirebaseUser firebaseUser = FirebaseUser.fromUser(user);
-        
-        ApiFuture<WriteResult> result = firestore.collection(COLLECTION_NAME)
-                .document(user.getId()).set(firebaseUser);
-        result.get();
-        return user.getId();
+    default String save(User user) throws ExecutionException, InterruptedException {
+        return unwrap(saveAsync(user));
     }
 
-    public User findById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        ApiFuture<DocumentSnapshot> future = docRef.get();
-        DocumentSnapshot document = future.get();
-        
-        if (document.exists()) {
-            FirebaseUser firebaseUser = document.toObject(FirebaseUser.class);
-            return firebaseUser != null ? firebaseUser.toUser() : null;
-        }
-        return null;
+    default User findById(String id) throws ExecutionException, InterruptedException {
+        return findByIdAsync(id).get();
     }
 
-    public User findByUsername(String username) throws ExecutionException, InterruptedException {
-        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("username", username);
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        if (!documents.isEmpty()) {
-            FirebaseUser firebaseUser = documents.get(0).toObject(FirebaseUser.class);
-            return firebaseUser != null ? firebaseUser.toUser() : null;
-        }
-        return null;
+    default User findByUsername(String username) throws ExecutionException, InterruptedException {
+        return findByUsernameAsync(username).get();
     }
 
-    public User findByEmail(String email) throws ExecutionException, InterruptedException {
-        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("email", email);
-        ApiFuture<QuerySnapshot> future = query.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        
-        if (!documents.isEmpty()) {
-            FirebaseUser firebaseUser = documents.get(0).toObject(FirebaseUser.class);
-            return firebaseUser != null ? firebaseUser.toUser() : null;
-        }
-        return null;
+    default User findByEmail(String email) throws ExecutionException, InterruptedException {
+        return findByEmailAsync(email).get();
     }
 
-    public User findByUsernameOrEmail(String usernameOrEmail) throws ExecutionException, InterruptedException {
-        User user = findByUsername(usernameOrEmail);
-        if (user == null) {
-            user = findByEmail(usernameOrEmail);
-        }
-        return user;
+    default User findByUsernameOrEmail(String usernameOrEmail) throws ExecutionException, InterruptedException {
+        return findByUsernameOrEmailAsync(usernameOrEmail).get();
     }
 
-    public boolean existsByUsername(String username) throws ExecutionException, InterruptedException {
+    default boolean existsByUsername(String username) throws ExecutionException, InterruptedException {
         return findByUsername(username) != null;
     }
 
-    public boolean existsByEmail(String email) throws ExecutionException, InterruptedException {
+    default boolean existsByEmail(String email) throws ExecutionException, InterruptedException {
         return findByEmail(email) != null;
     }
 
-    public List<User> findAll() throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = firestore.collection(COLLECTION_NAME).get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
-        List<User> users = new ArrayList<>();
-        
-        for (QueryDocumentSnapshot document : documents) {
-            FirebaseUser firebaseUser = document.toObject(FirebaseUser.class);
-            if (firebaseUser != null) {
-                users.add(firebaseUser.toUser());
-            }
-        }
-        return users;
+    default List<User> findAll() throws ExecutionException, InterruptedException {
+        return findAllAsync().get();
+    }
+
+    default void deleteById(String id) throws ExecutionException, InterruptedException {
+        unwrap(deleteByIdAsync(id));
     }
 
-    public void deleteById(String id) throws ExecutionException, InterruptedException {
-        ApiFuture<WriteResult> writeResult = firestore.collection(COLLECTION_NAME).document(id).delete();
-        writeResult.get();
+    /**
+     * Every user, read a page at a time as the stream is consumed. Callers must close it.
+     */
+    Stream<User> streamAll();
+
+    /**
+     * Sets lastLoginAt on many users, so that one missing user does not fail the rest.
+     * Returns the number of updates that failed. Does not publish {@link UserChangedEvent}:
+     * the login time has no bearing on principals.
+     */
+    int updateLastLoginTimes(Map<String, LocalDateTime> lastLoginTimes) throws ExecutionException, InterruptedException;
+
+    // Non-blocking variants
+
+    /**
+     * Writes the user, assigning an id and createdAt if it is new. Fails with "already taken" /
+     * "already in use" if another user holds its username or email. The lastLoginAt of an
+     * existing user is kept as stored; only {@link #updateLastLoginTimes} changes it.
+     */
+    CompletableFuture<String> saveAsync(User user);
+
+    CompletableFuture<User> findByIdAsync(String id);
+
+    CompletableFuture<User> findByUsernameAsync(String username);
+
+    CompletableFuture<User> findByEmailAsync(String email);
+
+    /**
+     * The user whose username, or failing that email, matches.
+     */
+    CompletableFuture<User> findByUsernameOrEmailAsync(String usernameOrEmail);
+
+    CompletableFuture<List<User>> findAllAsync();
+
+    /**
+     * Makes the user findable by username and email, for users stored before lookups were
+     * indexed. Fails with "already taken" / "already in use", and changes nothing, if another
+     * user holds either.
+     */
+    CompletableFuture<Void> indexAsync(User user);
+
+    /**
+     * Records that every stored user has been indexed, so lookups that miss the index stop
+     * searching for users that predate it, on every instance.
+     */
+    CompletableFuture<Void> markIndexCompleteAsync();
+
+    CompletableFuture<Void> deleteByIdAsync(String id);
+
+    private static <T> T unwrap(CompletableFuture<T> future) throws ExecutionException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Surface validation failures such as "already taken" as themselves
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package org.example.repository.codec;
+
+import org.example.model.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.example.repository.codec.DocumentFields.*;
+
+public final class CategoryCodec implements DocumentCodec<Category> {
+
+    public static final CategoryCodec INSTANCE = new CategoryCodec();
+
+    private static final List<String> FIELDS = List.of("name", "description", "color", "icon");
+
+    private CategoryCodec() {
+    }
+
+    @Override
+    public List<String> fields() {
+        return FIELDS;
+    }
+
+    @Override
+    public Map<String, Object> encode(Category category) {
+        Map<String, Object> data = new HashMap<>(8);
+        put(data, "name", category.getName());
+        put(data, "description", category.getDescription());
+        put(data, "color", category.getColor());
+        put(data, "icon", category.getIcon());
+        return data;
+    }
+
+    @Override
+    public Category decode(String id, Map<String, Object> data) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(getString(data, "name"));
+        category.setDescription(getString(data, "description"));
+        category.setColor(getString(data, "color"));
+        category.setIcon(getString(data, "icon"));
+        return category;
+    }
+}
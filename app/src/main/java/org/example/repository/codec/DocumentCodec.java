@@ -0,0 +1,40 @@
+package org.example.repository.codec;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written mapping between a model and its Firestore document fields, used instead of
+ * the reflective bean mapper behind {@code DocumentSnapshot.toObject} and {@code set(Object)}.
+ */
+public interface DocumentCodec<T> {
+
+    /**
+     * Every field the codec writes, whether or not a given value sets it.
+     */
+    List<String> fields();
+
+    Map<String, Object> encode(T value);
+
+    /**
+     * Like {@link #encode} but for {@code update()}: fields the value leaves unset are
+     * deleted, so the update replaces the stored fields instead of merging into them.
+     */
+    default Map<String, Object> encodeUpdate(T value) {
+        Map<String, Object> data = encode(value);
+        for (String field : fields()) {
+            data.putIfAbsent(field, FieldValue.delete());
+        }
+        return data;
+    }
+
+    T decode(String id, Map<String, Object> data);
+
+    default T decode(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? decode(document.getId(), data) : null;
+    }
+}
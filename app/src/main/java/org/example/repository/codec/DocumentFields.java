@@ -0,0 +1,96 @@
+package org.example.repository.codec;
+
+import com.google.cloud.Timestamp;
+import org.example.util.FirebaseTimestampConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed reads and writes of raw document fields. Date-times are always written as Firestore
+ * Timestamps (UTC); reads also accept the bean-mapped LocalDateTime maps and ISO strings
+ * that older documents were written with.
+ */
+public final class DocumentFields {
+
+    private DocumentFields() {
+    }
+
+    public static void put(Map<String, Object> data, String field, Object value) {
+        if (value != null) {
+            data.put(field, value);
+        }
+    }
+
+    public static void putDateTime(Map<String, Object> data, String field, LocalDateTime value) {
+        if (value != null) {
+            data.put(field, toTimestamp(value));
+        }
+    }
+
+    public static Timestamp toTimestamp(LocalDateTime value) {
+        return FirebaseTimestampConverter.toTimestamp(value);
+    }
+
+    public static String getString(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value != null ? value.toString() : null;
+    }
+
+    public static Double getDouble(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number number ? number.doubleValue() : null;
+    }
+
+    public static boolean getBoolean(Map<String, Object> data, String field) {
+        return Boolean.TRUE.equals(data.get(field));
+    }
+
+    public static List<String> getStringList(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (!(value instanceof List<?> list)) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object item : list) {
+            strings.add(String.valueOf(item));
+        }
+        return strings;
+    }
+
+    public static LocalDateTime getDateTime(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Timestamp timestamp) {
+            return FirebaseTimestampConverter.toLocalDateTime(timestamp);
+        }
+        if (value instanceof Date date) {
+            return FirebaseTimestampConverter.toLocalDateTime(Timestamp.of(date));
+        }
+        if (value instanceof Map<?, ?> legacy) {
+            return fromBeanMap(legacy);
+        }
+        return LocalDateTime.parse(value.toString());
+    }
+
+    private static LocalDateTime fromBeanMap(Map<?, ?> map) {
+        return LocalDateTime.of(
+                intField(map, "year"),
+                intField(map, "monthValue"),
+                intField(map, "dayOfMonth"),
+                intField(map, "hour"),
+                intField(map, "minute"),
+                intField(map, "second"),
+                intField(map, "nano"));
+    }
+
+    private static int intField(Map<?, ?> map, String field) {
+        Object value = map.get(field);
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+}
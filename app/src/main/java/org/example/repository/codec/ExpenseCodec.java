@@ -0,0 +1,65 @@
+package org.example.repository.codec;
+
+import org.example.model.Expense;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.example.repository.codec.DocumentFields.*;
+
+public final class ExpenseCodec implements DocumentCodec<Expense> {
+
+    public static final ExpenseCodec INSTANCE = new ExpenseCodec();
+
+    private static final List<String> FIELDS = List.of(
+            "title", "description", "amount", "category",
+            "date", "userId", "createdAt", "updatedAt");
+
+    private ExpenseCodec() {
+    }
+
+    @Override
+    public List<String> fields() {
+        return FIELDS;
+    }
+
+    @Override
+    public Map<String, Object> encode(Expense expense) {
+        Map<String, Object> data = new HashMap<>(16);
+        put(data, "title", expense.getTitle());
+        put(data, "description", expense.getDescription());
+        put(data, "amount", expense.getAmount());
+        put(data, "category", expense.getCategory());
+        putDateTime(data, "date", expense.getDate());
+        put(data, "userId", expense.getUserId());
+        putDateTime(data, "createdAt", expense.getCreatedAt());
+        putDateTime(data, "updatedAt", expense.getUpdatedAt());
+        return data;
+    }
+
+    @Override
+    public Expense decode(String id, Map<String, Object> data) {
+        Expense expense = new Expense();
+        expense.setId(id);
+        expense.setTitle(getString(data, "title"));
+        expense.setDescription(getString(data, "description"));
+        expense.setAmount(getDouble(data, "amount"));
+        expense.setCategory(getString(data, "category"));
+        expense.setDate(getDateTime(data, "date"));
+        expense.setUserId(getString(data, "userId"));
+        expense.setCreatedAt(getDateTime(data, "createdAt"));
+        expense.setUpdatedAt(getDateTime(data, "updatedAt"));
+        return expense;
+    }
+
+    /**
+     * {@code current} with the non-null fields of {@code changes} applied, as a new expense;
+     * the fields that are null in {@code changes} keep their stored values.
+     */
+    public Expense patch(Expense current, Expense changes) {
+        Map<String, Object> merged = encode(current);
+        merged.putAll(encode(changes));
+        return decode(current.getId(), merged);
+    }
+}
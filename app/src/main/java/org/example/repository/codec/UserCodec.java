@@ -0,0 +1,59 @@
+package org.example.repository.codec;
+
+import org.example.model.User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.example.repository.codec.DocumentFields.*;
+
+public final class UserCodec implements DocumentCodec<User> {
+
+    public static final UserCodec INSTANCE = new UserCodec();
+
+    private static final List<String> FIELDS = List.of(
+            "username", "email", "password", "firstName", "lastName",
+            "roles", "enabled", "createdAt", "updatedAt", "lastLoginAt");
+
+    private UserCodec() {
+    }
+
+    @Override
+    public List<String> fields() {
+        return FIELDS;
+    }
+
+    @Override
+    public Map<String, Object> encode(User user) {
+        Map<String, Object> data = new HashMap<>(16);
+        put(data, "username", user.getUsername());
+        put(data, "email", user.getEmail());
+        put(data, "password", user.getPassword());
+        put(data, "firstName", user.getFirstName());
+        put(data, "lastName", user.getLastName());
+        put(data, "roles", user.getRoles());
+        data.put("enabled", user.isEnabled());
+        putDateTime(data, "createdAt", user.getCreatedAt());
+        putDateTime(data, "updatedAt", user.getUpdatedAt());
+        putDateTime(data, "lastLoginAt", user.getLastLoginAt());
+        return data;
+    }
+
+    @Override
+    public User decode(String id, Map<String, Object> data) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(getString(data, "username"));
+        user.setEmail(getString(data, "email"));
+        user.setPassword(getString(data, "password"));
+        user.setFirstName(getString(data, "firstName"));
+        user.setLastName(getString(data, "lastName"));
+        user.setRoles(getStringList(data, "roles"));
+        user.setEnabled(getBoolean(data, "enabled"));
+        user.setCreatedAt(getDateTime(data, "createdAt"));
+        user.setUpdatedAt(getDateTime(data, "updatedAt"));
+        user.setLastLoginAt(getDateTime(data, "lastLoginAt"));
+        return user;
+    }
+}
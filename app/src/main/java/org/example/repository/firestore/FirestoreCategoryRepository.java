@@ -0,0 +1,132 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.*;
+import org.example.model.Category;
+import org.example.repository.CategoryRepository;
+import org.example.repository.codec.CategoryCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static org.example.util.ApiFutureUtils.toCompletableFuture;
+
+@Repository
+@Profile("!memory & !disk")
+public class FirestoreCategoryRepository implements CategoryRepository {
+
+    private static final String COLLECTION_NAME = "categories";
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private final CategoryCodec codec = CategoryCodec.INSTANCE;
+
+    @Autowired
+    private Firestore firestore;
+
+    // Non-blocking variants: each completes when the Firestore round trip does
+
+    @Override
+    public CompletableFuture<String> saveAsync(Category category) {
+        WriteBatch batch = firestore.batch();
+        if (category.getId() == null || category.getId().isEmpty()) {
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
+            category.setId(docRef.getId());
+            batch.create(docRef, codec.encode(category));
+        } else {
+            batch.set(firestore.collection(COLLECTION_NAME).document(category.getId()), codec.encode(category));
+        }
+        ResourceVersions.bump(batch, ResourceVersions.categories(firestore));
+        return toCompletableFuture(batch.commit())
+                .thenApply(writeResults -> category.getId());
+    }
+
+    /**
+     * One commit; a missing category is reported by the update itself (NOT_FOUND).
+     */
+    @Override
+    public CompletableFuture<Category> updateAsync(Category category) {
+        WriteBatch batch = firestore.batch();
+        batch.update(firestore.collection(COLLECTION_NAME).document(category.getId()), codec.encodeUpdate(category));
+        ResourceVersions.bump(batch, ResourceVersions.categories(firestore));
+        return toCompletableFuture(batch.commit())
+                .handle((writeResults, error) -> {
+                    if (error == null) {
+                        return category;
+                    }
+                    if (FirestoreWrites.isNotFound(error)) {
+                        return null;
+                    }
+                    throw new CompletionException(FirestoreWrites.unwrap(error));
+                });
+    }
+
+    @Override
+    public CompletableFuture<Category> findByIdAsync(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenApply(document -> document.exists() ? codec.decode(document) : null);
+    }
+
+    @Override
+    public CompletableFuture<List<Category>> findAllAsync() {
+        return toCompletableFuture(firestore.collection(COLLECTION_NAME).get())
+                .thenApply(snapshot -> {
+                    List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+                    List<Category> categories = new ArrayList<>(documents.size());
+
+                    for (QueryDocumentSnapshot document : documents) {
+                        categories.add(codec.decode(document));
+                    }
+                    return categories;
+                });
+    }
+
+    /**
+     * One read, then one commit guarded by the update time it saw, so a category deleted or
+     * rewritten in between makes the delete re-read and try again.
+     */
+    @Override
+    public CompletableFuture<Boolean> deleteByIdAsync(String id) {
+        return deleteByIdAsync(id, 1);
+    }
+
+    private CompletableFuture<Boolean> deleteByIdAsync(String id, int attempt) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenCompose(snapshot -> {
+                    if (!snapshot.exists()) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    WriteBatch batch = firestore.batch();
+                    batch.delete(docRef, Precondition.updatedAt(snapshot.getUpdateTime()));
+                    ResourceVersions.bump(batch, ResourceVersions.categories(firestore));
+                    return toCompletableFuture(batch.commit()).thenApply(writeResults -> true);
+                })
+                .handle((deleted, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(deleted);
+                    }
+                    if (FirestoreWrites.isConflict(error) && attempt < MAX_WRITE_ATTEMPTS) {
+                        return deleteByIdAsync(id, attempt + 1);
+                    }
+                    return CompletableFuture.<Boolean>failedFuture(FirestoreWrites.unwrap(error));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    @Override
+    public CompletableFuture<Long> findVersionAsync() {
+        return ResourceVersions.read(ResourceVersions.categories(firestore));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsByIdAsync(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get()).thenApply(DocumentSnapshot::exists);
+    }
+}
@@ -0,0 +1,718 @@
+package org.example.repository.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import jakarta.annotation.PostConstruct;
+import org.example.exception.PreconditionFailedException;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.repository.ExpenseBulkWriter;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.ExpenseSummaries;
+import org.example.repository.ExpenseTotals;
+import org.example.repository.codec.ExpenseCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static org.example.repository.codec.DocumentFields.toTimestamp;
+import static org.example.util.FirebaseTimestampConverter.toLocalDateTime;
+import static org.example.util.ApiFutureUtils.toCompletableFuture;
+
+/**
+ * Every write that adds, changes or removes an expense also applies the matching delta to
+ * the owner's monthly rollup (users/{userId}/rollups/{yyyy-MM}) in the same batch, so
+ * rollups stay consistent with the expenses they summarize.
+ * <p>
+ * Deltas are only applied once a rebuild has written the user's marker
+ * (users/{userId}/rollups/built). A first rebuild writes it in the "building" state before it
+ * counts any month, so that writes from then on are applied, and only marks it built once
+ * every month is in place. Rollups are not read until then: they would miss older expenses.
+ */
+@Repository
+@Profile("!memory & !disk")
+public class FirestoreExpenseRepository implements ExpenseRepository {
+
+    private static final String COLLECTION_NAME = "expenses";
+    private static final String USERS_COLLECTION = "users";
+    private static final String ROLLUPS_COLLECTION = "rollups";
+    private static final String ROLLUPS_BUILT = "built";
+    private static final String MARKER_STATE = "state";
+    private static final String STATE_BUILDING = "building";
+    private static final int MAX_BATCH_WRITES = 500;
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private static final AggregateField.SumAggregateField AMOUNT_SUM = AggregateField.sum("amount");
+    private static final AggregateField.AverageAggregateField AMOUNT_AVERAGE = AggregateField.average("amount");
+
+    private final ExpenseCodec codec = ExpenseCodec.INSTANCE;
+
+    @Autowired
+    private Firestore firestore;
+
+    // Users known to have a rollup marker, so that their writes apply deltas without reading
+    // it first. The marker is never removed; a user evicted from here costs one marker read.
+    private Cache<String, Boolean> rollupsTracked;
+
+    @Value("${app.rollups.tracked-users-cache-size:100000}")
+    private long rollupsTrackedCacheSize;
+
+    // BulkWriter ramps up from the initial rate (500/50/5 rule) up to the max rate
+    @Value("${app.import.initial-ops-per-second:500}")
+    private int bulkInitialOpsPerSecond;
+
+    @Value("${app.import.max-ops-per-second:10000}")
+    private int bulkMaxOpsPerSecond;
+
+    @PostConstruct
+    void init() {
+        rollupsTracked = CacheBuilder.newBuilder()
+                .maximumSize(rollupsTrackedCacheSize)
+                .build();
+    }
+
+    // Streaming reads: pages of STREAM_PAGE_SIZE documents are read as the consumer gets to
+    // them, with one page read ahead. Callers must close the returned stream.
+
+    @Override
+    public Stream<Expense> streamByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        Query query = userQuery(userId, startDate, endDate)
+                .orderBy("date", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        return QueryStreams.stream(query, STREAM_PAGE_SIZE, this::toExpense);
+    }
+
+    @Override
+    public Stream<Expense> streamSummariesByUserId(String userId) {
+        Query query = userQuery(userId, null, null).select("category", "amount", "date");
+        return QueryStreams.stream(query, STREAM_PAGE_SIZE, this::toExpense);
+    }
+
+    // Non-blocking variants: each completes when the Firestore round trip does
+
+    @Override
+    public CompletableFuture<String> saveAsync(Expense expense) {
+        if (expense.getId() == null || expense.getId().isEmpty()) {
+            return createAsync(expense).thenApply(Expense::getId);
+        }
+        return transact(expense.getId(), null, current -> {
+            if (current != null) {
+                expense.setCreatedAt(current.getCreatedAt());
+            }
+            return expense;
+        }, codec::encodeUpdate).thenApply(saved -> saved.getId());
+    }
+
+    /**
+     * Creates the expense and adds it to its month's rollup in one atomic batch, a single
+     * round trip once the owner's rollups are known to be built. Timestamps are set by the
+     * server and copied back from the write result, so the returned expense matches what was
+     * stored without reading it back.
+     */
+    @Override
+    public CompletableFuture<Expense> createAsync(Expense expense) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
+        expense.setId(docRef.getId());
+
+        RollupDeltas deltas = new RollupDeltas();
+        deltas.add(expense);
+
+        Map<String, Object> data = codec.encode(expense);
+        data.put("createdAt", FieldValue.serverTimestamp());
+        data.put("updatedAt", FieldValue.serverTimestamp());
+
+        return withRollups(deltas.userIds())
+                .thenCompose(built -> {
+                    WriteBatch batch = firestore.batch();
+                    batch.create(docRef, data);
+                    deltas.forUsers(built).writeTo(batch, this::rollupRef);
+                    bumpVersions(batch, deltas);
+                    return toCompletableFuture(batch.commit());
+                })
+                .thenApply(results -> {
+                    LocalDateTime written = toLocalDateTime(results.get(0).getUpdateTime());
+                    expense.setCreatedAt(written);
+                    expense.setUpdatedAt(written);
+                    expense.setVersion(FirestoreWrites.versionOf(results.get(0).getUpdateTime()));
+                    return expense;
+                });
+    }
+
+    /**
+     * Reads the expense, applies the mutation and writes it back together with the rollup
+     * delta. The mutation sees {@code null} if the expense does not exist and may throw to
+     * abort; it runs again if the expense changes between the read and the write.
+     */
+    @Override
+    public CompletableFuture<Expense> updateAsync(String id, String expectedVersion, Consumer<Expense> mutation) {
+        return transact(id, expectedVersion, current -> {
+            mutation.accept(current);
+            return current;
+        }, codec::encodeUpdate);
+    }
+
+    /**
+     * Applies the non-null fields of {@code changes} with a field-level update, so only those
+     * fields and a server-side updatedAt are written. The check sees the current expense
+     * ({@code null} if missing) and may throw to abort; the update is guarded by the update
+     * time the check saw, so it cannot land on a version the check did not approve.
+     * Completes with the expense as written.
+     */
+    @Override
+    public CompletableFuture<Expense> patchAsync(String id, String expectedVersion, Expense changes,
+                                                 Consumer<Expense> check) {
+        Map<String, Object> patch = codec.encode(changes);
+        return transact(id, expectedVersion, current -> {
+            check.accept(current);
+            if (current == null) {
+                return null;
+            }
+            return codec.patch(current, changes);
+        }, next -> new HashMap<>(patch));
+    }
+
+    /**
+     * Deletes the expense and removes it from its rollup in one batch. The check sees the
+     * current expense ({@code null} if missing) and may throw to abort the delete.
+     */
+    @Override
+    public CompletableFuture<Void> deleteAsync(String id, String expectedVersion, Consumer<Expense> check) {
+        return transact(id, expectedVersion, current -> {
+            check.accept(current);
+            return null;
+        }, codec::encodeUpdate).thenApply(deleted -> null);
+    }
+
+    @Override
+    public CompletableFuture<Expense> findByIdAsync(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenApply(document -> document.exists() ? toExpense(document) : null);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findAllAsync() {
+        return toCompletableFuture(firestore.collection(COLLECTION_NAME).get())
+                .thenApply(this::toExpenses);
+    }
+
+    /**
+     * One getAll round trip however many ids there are.
+     */
+    @Override
+    public CompletableFuture<List<Expense>> findAllByIdAsync(List<String> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        DocumentReference[] refs = ids.stream()
+                .map(id -> firestore.collection(COLLECTION_NAME).document(id))
+                .toArray(DocumentReference[]::new);
+
+        // getAll returns snapshots in the order of the references
+        return toCompletableFuture(firestore.getAll(refs))
+                .thenApply(snapshots -> {
+                    List<Expense> expenses = new ArrayList<>(snapshots.size());
+                    for (DocumentSnapshot snapshot : snapshots) {
+                        if (snapshot.exists()) {
+                            expenses.add(toExpense(snapshot));
+                        }
+                    }
+                    return expenses;
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+        return toCompletableFuture(query.get()).thenApply(this::toExpenses);
+    }
+
+    /**
+     * Requires the userId/date/__name__ composite index.
+     */
+    @Override
+    public CompletableFuture<List<Expense>> findPageByUserIdAsync(String userId, LocalDateTime afterDate,
+                                                                 String afterId, int limit) {
+        Query query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .orderBy("date", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (afterId != null) {
+            query = query.startAfter(toTimestamp(afterDate), afterId);
+        }
+        return toCompletableFuture(query.limit(limit).get()).thenApply(this::toExpenses);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByCategoryAsync(String category) {
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("category", category);
+        return toCompletableFuture(query.get()).thenApply(this::toExpenses);
+    }
+
+    /**
+     * Served by the userId/date/__name__ composite index, so cost grows with that user's rows only.
+     */
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate) {
+        Query query = userQuery(userId, startDate, endDate)
+                .orderBy("date", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        return toCompletableFuture(query.get()).thenApply(this::toExpenses);
+    }
+
+    /**
+     * Computed by Firestore rather than by reading the documents; a range requires the
+     * userId/date index.
+     */
+    @Override
+    public CompletableFuture<ExpenseTotals> aggregateByUserIdAsync(String userId, LocalDateTime startDate,
+                                                                  LocalDateTime endDate) {
+        return toCompletableFuture(totalsQuery(userId, startDate, endDate).get())
+                .thenApply(FirestoreExpenseRepository::toTotals);
+    }
+
+    /**
+     * Both queries run in one read-only transaction, so they read a single snapshot. They are
+     * sent together rather than one after the other.
+     */
+    @Override
+    public CompletableFuture<ExpenseSummaries> aggregateWithSummariesByUserIdAsync(String userId,
+                                                                                   LocalDateTime startDate,
+                                                                                   LocalDateTime endDate) {
+        AggregateQuery totalsQuery = totalsQuery(userId, startDate, endDate);
+        Query summariesQuery = userQuery(userId, startDate, endDate).select("category", "amount", "date");
+        TransactionOptions readOnly = TransactionOptions.createReadOnlyOptionsBuilder().build();
+
+        return toCompletableFuture(firestore.runTransaction(transaction -> {
+            ApiFuture<AggregateQuerySnapshot> totals = transaction.get(totalsQuery);
+            ApiFuture<QuerySnapshot> summaries = transaction.get(summariesQuery);
+            return new ExpenseSummaries(toTotals(totals.get()), toExpenses(summaries.get()));
+        }, readOnly));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findSummariesByUserIdAsync(String userId, LocalDateTime startDate,
+                                                                      LocalDateTime endDate) {
+        Query query = userQuery(userId, startDate, endDate).select("category", "amount", "date");
+        return toCompletableFuture(query.get()).thenApply(this::toExpenses);
+    }
+
+    /**
+     * One query for the months and the marker, which comes back with them.
+     */
+    @Override
+    public CompletableFuture<List<MonthlyRollup>> findRollupsByUserIdAsync(String userId) {
+        return toCompletableFuture(rollups(userId).get())
+                .thenApply(snapshot -> {
+                    boolean built = false;
+                    List<MonthlyRollup> rollups = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : snapshot.getDocuments()) {
+                        if (ROLLUPS_BUILT.equals(document.getId())) {
+                            rollupsTracked.put(userId, Boolean.TRUE);
+                            built = !STATE_BUILDING.equals(document.getString(MARKER_STATE));
+                        } else {
+                            rollups.add(toRollup(document));
+                        }
+                    }
+                    return built ? rollups : null;
+                });
+    }
+
+    /**
+     * Replaces each month in its own transaction, so that no expense write is lost to it: the
+     * transaction reads the user's version counter, which every expense write bumps, so a
+     * write either lands before it and is recounted, or after it and increments the rollup it
+     * set. Months are only recounted from their expenses if the counter moved since
+     * {@code version}. Months that no longer have expenses are deleted, and the marker is
+     * set to built once every month is in place.
+     * <p>
+     * On a first build, a write that checked for the marker just before it was written can
+     * still be left out; the next rebuild repairs it.
+     */
+    @Override
+    public CompletableFuture<Void> replaceRollupsAsync(String userId, List<MonthlyRollup> rollups, long version) {
+        Map<String, MonthlyRollup> computed = new TreeMap<>();
+        rollups.forEach(rollup -> computed.put(rollup.getMonth(), rollup));
+
+        return toCompletableFuture(rollups(userId).get())
+                .thenCompose(existing -> {
+                    Set<String> months = new TreeSet<>(computed.keySet());
+                    boolean marked = false;
+                    for (QueryDocumentSnapshot document : existing.getDocuments()) {
+                        if (ROLLUPS_BUILT.equals(document.getId())) {
+                            marked = true;
+                        } else {
+                            months.add(document.getId());
+                        }
+                    }
+
+                    CompletableFuture<Void> replaced = marked
+                            ? CompletableFuture.completedFuture(null)
+                            : toCompletableFuture(rollupsBuiltRef(userId).set(Map.of(MARKER_STATE, STATE_BUILDING)))
+                                    .thenRun(() -> rollupsTracked.put(userId, Boolean.TRUE));
+                    for (String month : months) {
+                        replaced = replaced.thenCompose(previous ->
+                                replaceMonthAsync(userId, month, computed.get(month), version));
+                    }
+                    return replaced;
+                })
+                .thenCompose(replaced -> {
+                    Map<String, Object> marker = new HashMap<>();
+                    marker.put(MARKER_STATE, ROLLUPS_BUILT);
+                    marker.put("builtAt", FieldValue.serverTimestamp());
+                    WriteBatch batch = firestore.batch();
+                    batch.set(rollupsBuiltRef(userId), marker);
+                    ResourceVersions.bump(batch, ResourceVersions.expenses(firestore, userId));
+                    return toCompletableFuture(batch.commit());
+                })
+                .thenAccept(results -> rollupsTracked.put(userId, Boolean.TRUE));
+    }
+
+    private CompletableFuture<Void> replaceMonthAsync(String userId, String month, MonthlyRollup computed,
+                                                      long version) {
+        DocumentReference rollupRef = rollupRef(userId, month);
+        DocumentReference counterRef = ResourceVersions.expenses(firestore, userId);
+        return toCompletableFuture(firestore.runTransaction(transaction -> {
+            MonthlyRollup rollup = computed;
+            if (ResourceVersions.valueOf(transaction.get(counterRef).get()) != version) {
+                List<Expense> expenses = toExpenses(transaction.get(monthQuery(userId, month)).get());
+                List<MonthlyRollup> recounted = MonthlyRollup.summarize(expenses.stream());
+                rollup = recounted.isEmpty() ? null : recounted.get(0);
+            }
+            if (rollup == null) {
+                transaction.delete(rollupRef);
+            } else {
+                transaction.set(rollupRef, toRollupData(rollup));
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Long> findVersionByUserIdAsync(String userId) {
+        return ResourceVersions.read(ResourceVersions.expenses(firestore, userId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsByIdAsync(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get()).thenApply(DocumentSnapshot::exists);
+    }
+
+    @Override
+    public ExpenseBulkWriter openBulkWriter() {
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(bulkInitialOpsPerSecond)
+                .setMaxOpsPerSecond(bulkMaxOpsPerSecond)
+                .build());
+
+        // Rollups are applied once at close, from the rows that were actually written
+        RollupDeltas deltas = new RollupDeltas();
+        Object pendingLock = new Object();
+        int[] pending = {0};
+
+        return new ExpenseBulkWriter() {
+            @Override
+            public CompletableFuture<String> create(Expense expense) {
+                DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
+                LocalDateTime now = LocalDateTime.now();
+                expense.setId(docRef.getId());
+                expense.setCreatedAt(now);
+                expense.setUpdatedAt(now);
+
+                synchronized (pendingLock) {
+                    pending[0]++;
+                }
+                return toCompletableFuture(bulkWriter.create(docRef, codec.encode(expense)))
+                        .whenComplete((writeResult, error) -> {
+                            synchronized (pendingLock) {
+                                if (error == null) {
+                                    deltas.add(expense);
+                                }
+                                pending[0]--;
+                                pendingLock.notifyAll();
+                            }
+                        })
+                        .thenApply(writeResult -> expense.getId());
+            }
+
+            @Override
+            public void close() throws ExecutionException {
+                try {
+                    bulkWriter.close();
+                    synchronized (pendingLock) {
+                        while (pending[0] > 0) {
+                            pendingLock.wait();
+                        }
+                    }
+                    commitDeltas(deltas);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ExecutionException("Interrupted while flushing bulk writes", e);
+                }
+            }
+        };
+    }
+
+    private void commitDeltas(RollupDeltas deltas) throws ExecutionException, InterruptedException {
+        Set<String> unbumped = new LinkedHashSet<>(deltas.userIds());
+        // Each part also bumps one version counter per user it touches
+        for (RollupDeltas part : deltas.forUsers(withRollups(deltas.userIds()).get()).split(MAX_BATCH_WRITES / 2)) {
+            WriteBatch batch = firestore.batch();
+            part.writeTo(batch, this::rollupRef);
+            bumpVersions(batch, part);
+            unbumped.removeAll(part.userIds());
+            batch.commit().get();
+        }
+        for (List<String> userIds : Lists.partition(new ArrayList<>(unbumped), MAX_BATCH_WRITES)) {
+            WriteBatch batch = firestore.batch();
+            userIds.forEach(userId -> ResourceVersions.bump(batch, ResourceVersions.expenses(firestore, userId)));
+            batch.commit().get();
+        }
+    }
+
+    /**
+     * Optimistic read-modify-write: one read, then one batch whose expense write is guarded
+     * by the read's update time (or by non-existence), so a concurrent change makes the batch
+     * fail and the whole step is retried. Two round trips, where a transaction takes three
+     * (begin, read, commit). Rollup increments commute, so they need no guard of their own.
+     *
+     * @param updateData the fields to write when an existing expense is updated
+     */
+    private CompletableFuture<Expense> transact(String id, String expectedVersion, UnaryOperator<Expense> change,
+                                                Function<Expense, Map<String, Object>> updateData) {
+        return transact(id, expectedVersion, change, updateData, 1);
+    }
+
+    private CompletableFuture<Expense> transact(String id, String expectedVersion, UnaryOperator<Expense> change,
+                                                Function<Expense, Map<String, Object>> updateData, int attempt) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenCompose(snapshot -> writeChange(docRef, snapshot, expectedVersion, change, updateData))
+                .handle((expense, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(expense);
+                    }
+                    if (FirestoreWrites.isConflict(error)) {
+                        // A caller-supplied version cannot be refreshed by retrying
+                        if (expectedVersion != null) {
+                            return CompletableFuture.<Expense>failedFuture(versionMismatch(id));
+                        }
+                        if (attempt < MAX_WRITE_ATTEMPTS) {
+                            return transact(id, null, change, updateData, attempt + 1);
+                        }
+                    }
+                    return CompletableFuture.<Expense>failedFuture(FirestoreWrites.unwrap(error));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Expense> writeChange(DocumentReference docRef, DocumentSnapshot snapshot,
+                                                   String expectedVersion, UnaryOperator<Expense> change,
+                                                   Function<Expense, Map<String, Object>> updateData) {
+        Expense current = snapshot.exists() ? toExpense(snapshot) : null;
+
+        RollupDeltas deltas = new RollupDeltas();
+        deltas.remove(current);
+
+        Expense next = change.apply(current);
+        // Checked after the change so that its checks (existence, ownership) are reported first
+        if (expectedVersion != null && !expectedVersion.equals(FirestoreWrites.versionOf(snapshot.getUpdateTime()))) {
+            throw versionMismatch(docRef.getId());
+        }
+        boolean created = current == null && next != null && next.getCreatedAt() == null;
+        if (next == null && current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        WriteBatch batch = firestore.batch();
+        if (next == null) {
+            batch.delete(docRef, Precondition.updatedAt(snapshot.getUpdateTime()));
+        } else {
+            next.setId(docRef.getId());
+            if (current == null) {
+                Map<String, Object> data = codec.encode(next);
+                if (created) {
+                    data.put("createdAt", FieldValue.serverTimestamp());
+                }
+                data.put("updatedAt", FieldValue.serverTimestamp());
+                batch.create(docRef, data);
+            } else {
+                Map<String, Object> data = updateData.apply(next);
+                data.put("updatedAt", FieldValue.serverTimestamp());
+                batch.update(docRef, data, Precondition.updatedAt(snapshot.getUpdateTime()));
+            }
+            deltas.add(next);
+        }
+
+        return withRollups(deltas.userIds())
+                .thenCompose(built -> {
+                    deltas.forUsers(built).writeTo(batch, this::rollupRef);
+                    bumpVersions(batch, deltas);
+                    return toCompletableFuture(batch.commit());
+                })
+                .thenApply(results -> {
+                    if (next != null) {
+                        LocalDateTime written = toLocalDateTime(results.get(0).getUpdateTime());
+                        if (created) {
+                            next.setCreatedAt(written);
+                        }
+                        next.setUpdatedAt(written);
+                        next.setVersion(FirestoreWrites.versionOf(results.get(0).getUpdateTime()));
+                    }
+                    return next;
+                });
+    }
+
+    /**
+     * Those of the users who have a rollup marker. Users not known to have one are looked up
+     * in one getAll, so their writes cost an extra round trip until a rebuild.
+     */
+    private CompletableFuture<Set<String>> withRollups(Set<String> userIds) {
+        List<String> unknown = userIds.stream()
+                .filter(userId -> rollupsTracked.getIfPresent(userId) == null)
+                .toList();
+        if (unknown.isEmpty()) {
+            return CompletableFuture.completedFuture(userIds);
+        }
+        DocumentReference[] markers = unknown.stream().map(this::rollupsBuiltRef).toArray(DocumentReference[]::new);
+        return toCompletableFuture(firestore.getAll(markers))
+                .thenApply(snapshots -> {
+                    // getAll returns snapshots in the order of the references
+                    Set<String> tracked = new HashSet<>(userIds);
+                    for (int i = 0; i < snapshots.size(); i++) {
+                        if (snapshots.get(i).exists()) {
+                            rollupsTracked.put(unknown.get(i), Boolean.TRUE);
+                        } else {
+                            tracked.remove(unknown.get(i));
+                        }
+                    }
+                    return tracked;
+                });
+    }
+
+    private void bumpVersions(WriteBatch batch, RollupDeltas deltas) {
+        for (String userId : deltas.userIds()) {
+            ResourceVersions.bump(batch, ResourceVersions.expenses(firestore, userId));
+        }
+    }
+
+    private static PreconditionFailedException versionMismatch(String id) {
+        return new PreconditionFailedException("Expense " + id + " has been modified since the given version");
+    }
+
+    private AggregateQuery totalsQuery(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        return userQuery(userId, startDate, endDate)
+                .aggregate(AggregateField.count(), AMOUNT_SUM, AMOUNT_AVERAGE);
+    }
+
+    private static ExpenseTotals toTotals(AggregateQuerySnapshot snapshot) {
+        Double total = snapshot.getDouble(AMOUNT_SUM);
+        Double mean = snapshot.get(AMOUNT_AVERAGE);
+        return new ExpenseTotals(snapshot.getCount(),
+                total != null ? total : 0.0,
+                mean != null ? mean : 0.0);
+    }
+
+    private Query userQuery(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+        if (startDate != null) {
+            query = query.whereGreaterThanOrEqualTo("date", toTimestamp(startDate));
+        }
+        if (endDate != null) {
+            query = query.whereLessThanOrEqualTo("date", toTimestamp(endDate));
+        }
+        return query;
+    }
+
+    private Query monthQuery(String userId, String month) {
+        YearMonth yearMonth = YearMonth.parse(month);
+        return firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThanOrEqualTo("date", toTimestamp(yearMonth.atDay(1).atStartOfDay()))
+                .whereLessThan("date", toTimestamp(yearMonth.plusMonths(1).atDay(1).atStartOfDay()))
+                .select("category", "amount", "date");
+    }
+
+    private CollectionReference rollups(String userId) {
+        return firestore.collection(USERS_COLLECTION).document(userId).collection(ROLLUPS_COLLECTION);
+    }
+
+    private DocumentReference rollupRef(String userId, String month) {
+        return rollups(userId).document(month);
+    }
+
+    private DocumentReference rollupsBuiltRef(String userId) {
+        return rollups(userId).document(ROLLUPS_BUILT);
+    }
+
+    private Map<String, Object> toRollupData(MonthlyRollup rollup) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("month", rollup.getMonth());
+        data.put("total", rollup.getTotal());
+        data.put("count", rollup.getCount());
+        data.put("categories", new HashMap<>(rollup.getCategories()));
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MonthlyRollup toRollup(DocumentSnapshot document) {
+        Map<String, Double> categories = new HashMap<>();
+        Object stored = document.get("categories");
+        if (stored instanceof Map) {
+            ((Map<String, Object>) stored).forEach((category, amount) -> {
+                if (amount instanceof Number) {
+                    categories.put(category, ((Number) amount).doubleValue());
+                }
+            });
+        }
+        Double total = document.getDouble("total");
+        Long count = document.getLong("count");
+        return new MonthlyRollup(document.getId(),
+                total != null ? total : 0.0,
+                count != null ? count : 0L,
+                categories);
+    }
+
+    private List<Expense> toExpenses(QuerySnapshot snapshot) {
+        List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+        List<Expense> expenses = new ArrayList<>(documents.size());
+        
+        for (QueryDocumentSnapshot document : documents) {
+            expenses.add(toExpense(document));
+        }
+        return expenses;
+    }
+
+    private Expense toExpense(DocumentSnapshot document) {
+        Expense expense = codec.decode(document);
+        if (expense != null) {
+            expense.setVersion(FirestoreWrites.versionOf(document.getUpdateTime()));
+        }
+        return expense;
+    }
+}
@@ -0,0 +1,433 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.*;
+import org.example.model.User;
+import org.example.repository.UserChangedEvent;
+import org.example.repository.UserRepository;
+import org.example.repository.codec.DocumentFields;
+import org.example.repository.codec.UserCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static org.example.util.ApiFutureUtils.toCompletableFuture;
+
+/**
+ * Usernames and emails are unique through index documents, usernames/{key} and emails/{key}.
+ * Each key is the lowercased, URL-encoded value, and the document holds the owning user id.
+ * They are written in the same transaction as the user, so lookups by either are direct
+ * document reads and a second account can never claim the same name.
+ */
+@Repository
+@Profile("!memory & !disk")
+public class FirestoreUserRepository implements UserRepository {
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreUserRepository.class);
+
+    private static final String COLLECTION_NAME = "users";
+    private static final String USERNAMES_COLLECTION = "usernames";
+    private static final String EMAILS_COLLECTION = "emails";
+    private static final String MIGRATIONS_COLLECTION = "migrations";
+    private static final String USER_INDEX_MIGRATION = "user-index";
+    private static final String COMPLETED_AT_FIELD = "completedAt";
+    private static final String USER_ID_FIELD = "userId";
+    private static final String LAST_LOGIN_FIELD = "lastLoginAt";
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private final UserCodec codec = UserCodec.INSTANCE;
+
+    @Autowired
+    private Firestore firestore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Users written before the index documents existed are only found by querying; found
+    // users are indexed on the spot. Stops by itself once UserIndexBackfillService has
+    // indexed everyone and written migrations/user-index.
+    @Value("${app.users.legacy-lookup-fallback:true}")
+    private boolean legacyLookupFallback;
+
+    // Set once the marker has been seen; it is never removed
+    private volatile boolean indexComplete;
+
+    @Override
+    public Stream<User> streamAll() {
+        return QueryStreams.stream(firestore.collection(COLLECTION_NAME), STREAM_PAGE_SIZE, this::toUser)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Field-level updates through a BulkWriter.
+     */
+    @Override
+    public int updateLastLoginTimes(Map<String, LocalDateTime> lastLoginTimes)
+            throws ExecutionException, InterruptedException {
+        if (lastLoginTimes.isEmpty()) {
+            return 0;
+        }
+        BulkWriter bulkWriter = firestore.bulkWriter();
+        List<CompletableFuture<WriteResult>> writes = new ArrayList<>(lastLoginTimes.size());
+        lastLoginTimes.forEach((userId, loginAt) -> writes.add(toCompletableFuture(bulkWriter.update(
+                firestore.collection(COLLECTION_NAME).document(userId),
+                LAST_LOGIN_FIELD, DocumentFields.toTimestamp(loginAt)))));
+        bulkWriter.close();
+
+        int failed = 0;
+        for (CompletableFuture<WriteResult> write : writes) {
+            if (write.handle((result, error) -> error != null).get()) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    // Non-blocking variants: each completes when the Firestore round trip does
+
+    /**
+     * Writes the user and claims its username and email index documents in one transaction,
+     * releasing the old ones if either changed. Fails with "already taken" / "already in use"
+     * if another user holds them. An existing user's lastLoginAt is left as stored: it is
+     * written behind by LastLoginRecorder, and the copy being saved may predate it.
+     */
+    @Override
+    public CompletableFuture<String> saveAsync(User user) {
+        boolean isNew = user.getId() == null || user.getId().isEmpty();
+        if (isNew) {
+            // Create new document
+            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
+            user.setId(docRef.getId());
+            user.setCreatedAt(LocalDateTime.now());
+        }
+        user.setUpdatedAt(LocalDateTime.now());
+
+        // Unindexed legacy users are invisible to the transaction below, so look them up first
+        CompletableFuture<Void> legacyCheck = isNew
+                ? legacyLookupNeeded().thenCompose(needed -> needed
+                        ? checkLegacyDuplicates(user)
+                        : CompletableFuture.completedFuture(null))
+                : CompletableFuture.completedFuture(null);
+
+        DocumentReference userRef = firestore.collection(COLLECTION_NAME).document(user.getId());
+        DocumentReference usernameRef = indexRef(USERNAMES_COLLECTION, user.getUsername());
+        DocumentReference emailRef = indexRef(EMAILS_COLLECTION, user.getEmail());
+
+        return legacyCheck.thenCompose(ignored -> toCompletableFuture(firestore.runTransaction(transaction -> {
+            // The user and both index documents in one read
+            DocumentSnapshot[] snapshots = getAll(transaction, userRef, usernameRef, emailRef);
+            DocumentSnapshot current = snapshots[0];
+            User previous = current.exists() ? toUser(current) : null;
+
+            claim(snapshots[1], user.getId(), "Error: Username is already taken!");
+            claim(snapshots[2], user.getId(), "Error: Email is already in use!");
+
+            if (previous != null) {
+                release(transaction, USERNAMES_COLLECTION, previous.getUsername(), user.getUsername());
+                release(transaction, EMAILS_COLLECTION, previous.getEmail(), user.getEmail());
+            }
+            if (previous != null) {
+                Map<String, Object> data = codec.encodeUpdate(user);
+                data.remove(LAST_LOGIN_FIELD);
+                transaction.update(userRef, data);
+            } else {
+                transaction.set(userRef, codec.encode(user));
+            }
+            if (usernameRef != null) {
+                transaction.set(usernameRef, Map.of(USER_ID_FIELD, user.getId()));
+            }
+            if (emailRef != null) {
+                transaction.set(emailRef, Map.of(USER_ID_FIELD, user.getId()));
+            }
+            return user.getId();
+        }))).thenApply(id -> {
+            eventPublisher.publishEvent(new UserChangedEvent(id, user));
+            return id;
+        });
+    }
+
+    @Override
+    public CompletableFuture<User> findByIdAsync(String id) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(docRef.get())
+                .thenApply(document -> document.exists() ? toUser(document) : null);
+    }
+
+    @Override
+    public CompletableFuture<User> findByUsernameAsync(String username) {
+        return findByIndexAsync(USERNAMES_COLLECTION, "username", username);
+    }
+
+    @Override
+    public CompletableFuture<User> findByEmailAsync(String email) {
+        return findByIndexAsync(EMAILS_COLLECTION, "email", email);
+    }
+
+    @Override
+    public CompletableFuture<User> findByUsernameOrEmailAsync(String usernameOrEmail) {
+        DocumentReference usernameRef = indexRef(USERNAMES_COLLECTION, usernameOrEmail);
+        DocumentReference emailRef = indexRef(EMAILS_COLLECTION, usernameOrEmail);
+        if (usernameRef == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Both index documents in one round trip; a username match wins, as before
+        return toCompletableFuture(firestore.getAll(usernameRef, emailRef))
+                .thenCompose(indexes -> {
+                    String userId = indexedUserId(indexes.get(0));
+                    if (userId == null) {
+                        userId = indexedUserId(indexes.get(1));
+                    }
+                    if (userId != null) {
+                        return findByIdAsync(userId);
+                    }
+                    return legacyLookupNeeded().thenCompose(needed -> !needed
+                            ? CompletableFuture.completedFuture(null)
+                            : findLegacyAsync("username", usernameOrEmail)
+                                    .thenCompose(user -> user != null
+                                            ? CompletableFuture.completedFuture(user)
+                                            : findLegacyAsync("email", usernameOrEmail)));
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllAsync() {
+        return toCompletableFuture(firestore.collection(COLLECTION_NAME).get())
+                .thenApply(snapshot -> {
+                    List<User> users = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : snapshot.getDocuments()) {
+                        User user = toUser(document);
+                        if (user != null) {
+                            users.add(user);
+                        }
+                    }
+                    return users;
+                });
+    }
+
+    /**
+     * Claims whichever index documents the user is missing, in one transaction. If another
+     * user holds either name, nothing is written.
+     */
+    @Override
+    public CompletableFuture<Void> indexAsync(User user) {
+        DocumentReference usernameRef = indexRef(USERNAMES_COLLECTION, user.getUsername());
+        DocumentReference emailRef = indexRef(EMAILS_COLLECTION, user.getEmail());
+        if (usernameRef == null && emailRef == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return toCompletableFuture(firestore.runTransaction(transaction -> {
+            DocumentSnapshot[] indexes = getAll(transaction, usernameRef, emailRef);
+            claim(indexes[0], user.getId(), "Error: Username is already taken!");
+            claim(indexes[1], user.getId(), "Error: Email is already in use!");
+
+            if (usernameRef != null && !indexes[0].exists()) {
+                transaction.create(usernameRef, Map.of(USER_ID_FIELD, user.getId()));
+            }
+            if (emailRef != null && !indexes[1].exists()) {
+                transaction.create(emailRef, Map.of(USER_ID_FIELD, user.getId()));
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> markIndexCompleteAsync() {
+        DocumentReference markerRef = firestore.collection(MIGRATIONS_COLLECTION).document(USER_INDEX_MIGRATION);
+        Map<String, Object> marker = Map.of(COMPLETED_AT_FIELD, DocumentFields.toTimestamp(LocalDateTime.now()));
+        return toCompletableFuture(markerRef.set(marker))
+                .thenApply(ignored -> {
+                    indexComplete = true;
+                    return null;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteByIdAsync(String id) {
+        DocumentReference userRef = firestore.collection(COLLECTION_NAME).document(id);
+        return toCompletableFuture(firestore.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(userRef).get();
+            if (current.exists()) {
+                User previous = toUser(current);
+                release(transaction, USERNAMES_COLLECTION, previous.getUsername(), null);
+                release(transaction, EMAILS_COLLECTION, previous.getEmail(), null);
+                transaction.delete(userRef);
+            }
+            return null;
+        })).thenApply(ignored -> {
+            eventPublisher.publishEvent(new UserChangedEvent(id, null));
+            return null;
+        });
+    }
+
+    /**
+     * Whether a lookup that missed the index should query for a legacy user: only while the
+     * fallback is enabled and the backfill has not yet marked itself complete. Costs one
+     * document read per miss until the marker appears, none after.
+     */
+    private CompletableFuture<Boolean> legacyLookupNeeded() {
+        if (!legacyLookupFallback || indexComplete) {
+            return CompletableFuture.completedFuture(false);
+        }
+        DocumentReference markerRef = firestore.collection(MIGRATIONS_COLLECTION).document(USER_INDEX_MIGRATION);
+        return toCompletableFuture(markerRef.get()).thenApply(marker -> {
+            if (marker.exists()) {
+                indexComplete = true;
+            }
+            return !indexComplete;
+        });
+    }
+
+    private CompletableFuture<Void> checkLegacyDuplicates(User user) {
+        CompletableFuture<User> byUsername = user.getUsername() != null
+                ? findByUsernameAsync(user.getUsername()) : CompletableFuture.completedFuture(null);
+        CompletableFuture<User> byEmail = user.getEmail() != null
+                ? findByEmailAsync(user.getEmail()) : CompletableFuture.completedFuture(null);
+
+        return byUsername.thenCombine(byEmail, (usernameOwner, emailOwner) -> {
+            if (usernameOwner != null && !usernameOwner.getId().equals(user.getId())) {
+                throw new RuntimeException("Error: Username is already taken!");
+            }
+            if (emailOwner != null && !emailOwner.getId().equals(user.getId())) {
+                throw new RuntimeException("Error: Email is already in use!");
+            }
+            return null;
+        });
+    }
+
+    private CompletableFuture<User> findByIndexAsync(String indexCollection, String field, String value) {
+        DocumentReference indexRef = indexRef(indexCollection, value);
+        if (indexRef == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return toCompletableFuture(indexRef.get())
+                .thenCompose(index -> {
+                    String userId = indexedUserId(index);
+                    if (userId != null) {
+                        return findByIdAsync(userId);
+                    }
+                    return legacyLookupNeeded().thenCompose(needed -> needed
+                            ? findLegacyAsync(field, value)
+                            : CompletableFuture.completedFuture(null));
+                });
+    }
+
+    /**
+     * Firestore cannot compare case-insensitively, so this asks for the spellings a legacy
+     * user most likely has: as given, lowercase, uppercase and capitalized. Other mixed-case
+     * spellings are only found once UserIndexBackfillService has indexed them.
+     */
+    private CompletableFuture<User> findLegacyAsync(String field, String value) {
+        Query query = firestore.collection(COLLECTION_NAME).whereIn(field, spellings(value)).limit(1);
+        return toCompletableFuture(query.get())
+                .thenApply(this::firstUser)
+                .thenApply(user -> {
+                    if (user != null) {
+                        indexLegacyUser(user);
+                    }
+                    return user;
+                });
+    }
+
+    private void indexLegacyUser(User user) {
+        // A conflict means the data already has duplicates; the backfill reports those
+        indexAsync(user).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.warn("Could not index legacy user {}: {}", user.getId(), error.getMessage());
+            }
+        });
+    }
+
+    static List<String> spellings(String value) {
+        String trimmed = value.trim();
+        String lower = trimmed.toLowerCase(Locale.ROOT);
+        String capitalized = lower.isEmpty() ? lower
+                : lower.substring(0, 1).toUpperCase(Locale.ROOT) + lower.substring(1);
+        return new ArrayList<>(new LinkedHashSet<>(List.of(
+                value, trimmed, lower, trimmed.toUpperCase(Locale.ROOT), capitalized)));
+    }
+
+    private static void claim(DocumentSnapshot index, String userId, String takenMessage) {
+        String owner = index != null ? indexedUserId(index) : null;
+        if (owner != null && !owner.equals(userId)) {
+            throw new RuntimeException(takenMessage);
+        }
+    }
+
+    /**
+     * Snapshots of the references in one round trip, in their order; {@code null} for null
+     * references, such as the index document of a blank email.
+     */
+    private static DocumentSnapshot[] getAll(Transaction transaction, DocumentReference... refs)
+            throws ExecutionException, InterruptedException {
+        DocumentReference[] present = Arrays.stream(refs).filter(Objects::nonNull).toArray(DocumentReference[]::new);
+        // getAll returns snapshots in the order of the references
+        Iterator<DocumentSnapshot> snapshots = transaction.getAll(present).get().iterator();
+        DocumentSnapshot[] aligned = new DocumentSnapshot[refs.length];
+        for (int i = 0; i < refs.length; i++) {
+            if (refs[i] != null) {
+                aligned[i] = snapshots.next();
+            }
+        }
+        return aligned;
+    }
+
+    private void release(Transaction transaction, String indexCollection, String previousValue, String newValue) {
+        DocumentReference previousRef = indexRef(indexCollection, previousValue);
+        DocumentReference newRef = indexRef(indexCollection, newValue);
+        if (previousRef != null && !previousRef.equals(newRef)) {
+            transaction.delete(previousRef);
+        }
+    }
+
+    private DocumentReference indexRef(String indexCollection, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return firestore.collection(indexCollection).document(indexKey(value));
+    }
+
+    static String indexKey(String value) {
+        // Lowercase for case-insensitive uniqueness; encoding keeps '/' and friends out of the id
+        String key = URLEncoder.encode(value.trim().toLowerCase(Locale.ROOT), StandardCharsets.UTF_8);
+        // Firestore reserves ".", ".." and __*__ as ids. The encoder leaves '.' and '_' as they
+        // are, so their escapes never occur otherwise and cannot collide with another key.
+        if (key.equals(".") || key.equals("..")) {
+            return key.replace(".", "%2E");
+        }
+        if (key.length() >= 4 && key.startsWith("__") && key.endsWith("__")) {
+            return key.replace("_", "%5F");
+        }
+        return key;
+    }
+
+    private static String indexedUserId(DocumentSnapshot index) {
+        return index.exists() ? Objects.toString(index.get(USER_ID_FIELD), null) : null;
+    }
+
+    private User firstUser(QuerySnapshot snapshot) {
+        List<QueryDocumentSnapshot> documents = snapshot.getDocuments();
+        return documents.isEmpty() ? null : toUser(documents.get(0));
+    }
+
+    private User toUser(DocumentSnapshot document) {
+        return codec.decode(document);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.repository.firestore;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.FirestoreException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Version tokens and error classification for guarded writes, where "not found" and
+ * "changed underneath us" are reported by the write itself.
+ */
+final class FirestoreWrites {
+
+    private FirestoreWrites() {
+    }
+
+    /**
+     * Renders a document's update time as an opaque version token, as exposed in ETags.
+     */
+    static String versionOf(Timestamp updateTime) {
+        return updateTime != null ? updateTime.getSeconds() + "." + updateTime.getNanos() : null;
+    }
+
+    static boolean isNotFound(Throwable error) {
+        return hasCode(error, StatusCode.Code.NOT_FOUND);
+    }
+
+    /**
+     * True when the write lost a race: the document changed after it was read, or was
+     * created by someone else first. The caller can re-read and try again.
+     */
+    static boolean isConflict(Throwable error) {
+        return hasCode(error, StatusCode.Code.FAILED_PRECONDITION)
+                || hasCode(error, StatusCode.Code.ALREADY_EXISTS)
+                || hasCode(error, StatusCode.Code.ABORTED);
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static boolean hasCode(Throwable error, StatusCode.Code code) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException
+                    && apiException.getStatusCode().getCode() == code) {
+                return true;
+            }
+            if (cause instanceof FirestoreException firestoreException
+                    && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode().name().equals(code.name())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.example.util.ApiFutureUtils.toCompletableFuture;
+
+/**
+ * Reads a query as a {@link Stream} of keyset pages: each page is a limited query that
+ * resumes after the last document of the page before. Pages are pulled by the consuming
+ * thread, and the next one is requested while the current one is consumed, so at most two
+ * pages are held and a slow consumer only delays its own reads; the Firestore transport
+ * threads never wait for it. Streams must be closed; closing early cancels the page in
+ * flight.
+ */
+final class QueryStreams {
+
+    private QueryStreams() {
+    }
+
+    static <T> Stream<T> stream(Query query, int pageSize, Function<DocumentSnapshot, T> decoder) {
+        KeysetPages pages = new KeysetPages(query, pageSize);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(pages::close)
+                .map(decoder);
+    }
+
+    private static final class KeysetPages implements Iterator<DocumentSnapshot> {
+        private final Query query;
+        private final int pageSize;
+        // The next page, already requested; null once the last page has been received
+        private CompletableFuture<QuerySnapshot> pending;
+        private Iterator<QueryDocumentSnapshot> page = Collections.emptyIterator();
+
+        private KeysetPages(Query query, int pageSize) {
+            this.query = query;
+            this.pageSize = pageSize;
+            this.pending = fetch(query);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext()) {
+                if (pending == null) {
+                    return false;
+                }
+                List<QueryDocumentSnapshot> documents = await(pending).getDocuments();
+                // A short page is the last one; a full one may be followed by an empty page
+                pending = documents.size() < pageSize
+                        ? null
+                        : fetch(query.startAfter(documents.get(documents.size() - 1)));
+                page = documents.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public DocumentSnapshot next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private CompletableFuture<QuerySnapshot> fetch(Query pageQuery) {
+            return toCompletableFuture(pageQuery.limit(pageSize).get());
+        }
+
+        private void close() {
+            if (pending != null) {
+                pending.cancel(true);
+                pending = null;
+            }
+            page = Collections.emptyIterator();
+        }
+
+        private static QuerySnapshot await(CompletableFuture<QuerySnapshot> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while streaming query results", e);
+            } catch (ExecutionException e) {
+                Throwable error = FirestoreWrites.unwrap(e);
+                throw error instanceof RuntimeException runtimeException
+                        ? runtimeException
+                        : new IllegalStateException("Query stream failed", error);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.UpdateBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.example.util.ApiFutureUtils.toCompletableFuture;
+
+/**
+ * Version counters for data that clients poll: one per user for their expenses
+ * (users/{userId}/versions/expenses) and one for the shared categories (versions/categories).
+ * Every write to the data increments its counter in the same batch, so reading the counter
+ * is a cheap way to tell whether anything changed.
+ */
+final class ResourceVersions {
+
+    private static final String FIELD = "version";
+
+    private ResourceVersions() {
+    }
+
+    static DocumentReference expenses(Firestore firestore, String userId) {
+        return firestore.collection("users").document(userId).collection("versions").document("expenses");
+    }
+
+    static DocumentReference categories(Firestore firestore) {
+        return firestore.collection("versions").document("categories");
+    }
+
+    static void bump(UpdateBuilder<?> writes, DocumentReference counter) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD, FieldValue.increment(1));
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        writes.set(counter, data, SetOptions.merge());
+    }
+
+    /**
+     * The current count, 0 if the data has never been written since counting began.
+     */
+    static CompletableFuture<Long> read(DocumentReference counter) {
+        return toCompletableFuture(counter.get()).thenApply(ResourceVersions::valueOf);
+    }
+
+    /**
+     * The count held by a counter document read some other way, e.g. in a transaction.
+     */
+    static long valueOf(DocumentSnapshot snapshot) {
+        Long version = snapshot.exists() ? snapshot.getLong(FIELD) : null;
+        return version != null ? version : 0L;
+    }
+}
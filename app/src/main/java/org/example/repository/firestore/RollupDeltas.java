@@ -0,0 +1,130 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.UpdateBuilder;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Net changes to monthly rollups from a set of expense writes, collapsed so that each
+ * rollup document is written at most once, as merge-sets of server-side increments.
+ */
+class RollupDeltas {
+
+    private final Map<String, Delta> deltas = new LinkedHashMap<>();
+    private final Set<String> userIds = new LinkedHashSet<>();
+
+    void add(Expense expense) {
+        apply(expense, 1);
+    }
+
+    void remove(Expense expense) {
+        apply(expense, -1);
+    }
+
+    boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    /**
+     * Users whose expenses were touched, including by writes with no net rollup change.
+     */
+    Set<String> userIds() {
+        return userIds;
+    }
+
+    /**
+     * The deltas of the given users only.
+     */
+    RollupDeltas forUsers(Set<String> users) {
+        RollupDeltas selected = new RollupDeltas();
+        deltas.forEach((key, delta) -> {
+            if (users.contains(delta.userId)) {
+                selected.deltas.put(key, delta);
+            }
+        });
+        userIds.stream().filter(users::contains).forEach(selected.userIds::add);
+        return selected;
+    }
+
+    /**
+     * Splits the deltas into groups of at most {@code maxWrites} rollups, e.g. to respect the
+     * batch write limit.
+     */
+    List<RollupDeltas> split(int maxWrites) {
+        List<RollupDeltas> parts = new ArrayList<>();
+        RollupDeltas part = null;
+        for (Map.Entry<String, Delta> entry : deltas.entrySet()) {
+            if (part == null || part.deltas.size() == maxWrites) {
+                part = new RollupDeltas();
+                parts.add(part);
+            }
+            part.deltas.put(entry.getKey(), entry.getValue());
+            part.userIds.add(entry.getValue().userId);
+        }
+        return parts;
+    }
+
+    /**
+     * Adds one increment write per touched rollup to the batch or transaction.
+     */
+    void writeTo(UpdateBuilder<?> writes, BiFunction<String, String, DocumentReference> rollupRef) {
+        for (Delta delta : deltas.values()) {
+            if (delta.count == 0 && delta.total == 0 && delta.categories.values().stream().allMatch(v -> v == 0)) {
+                continue;
+            }
+            Map<String, Object> categories = new HashMap<>();
+            delta.categories.forEach((category, amount) -> categories.put(category, FieldValue.increment(amount)));
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("month", delta.month);
+            data.put("total", FieldValue.increment(delta.total));
+            data.put("count", FieldValue.increment(delta.count));
+            data.put("categories", categories);
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            writes.set(rollupRef.apply(delta.userId, delta.month), data, SetOptions.merge());
+        }
+    }
+
+    private void apply(Expense expense, int sign) {
+        if (expense == null || expense.getUserId() == null) {
+            return;
+        }
+        userIds.add(expense.getUserId());
+        if (expense.getDate() == null) {
+            return;
+        }
+        String month = MonthlyRollup.monthOf(expense.getDate());
+        double amount = expense.getAmount() != null ? sign * expense.getAmount() : 0.0;
+
+        Delta delta = deltas.computeIfAbsent(expense.getUserId() + "/" + month,
+                key -> new Delta(expense.getUserId(), month));
+        delta.total += amount;
+        delta.count += sign;
+        delta.categories.merge(MonthlyRollup.categoryOf(expense), amount, Double::sum);
+    }
+
+    private static class Delta {
+        private final String userId;
+        private final String month;
+        private final Map<String, Double> categories = new HashMap<>();
+        private double total;
+        private long count;
+
+        private Delta(String userId, String month) {
+            this.userId = userId;
+            this.month = month;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.repository.local;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A keyed collection of documents for the local storage backends. Single operations are
+ * thread-safe; repositories serialize their writes so that secondary indexes stay in step.
+ * Values handed in and out are copies: mutating them does not change what is stored.
+ */
+public interface DocumentTable<T> extends Closeable {
+
+    /**
+     * The document with the given id, or {@code null} if there is none.
+     */
+    T get(String id);
+
+    void put(String id, T value);
+
+    /**
+     * Returns {@code false} if there was no document to remove.
+     */
+    boolean remove(String id);
+
+    boolean containsKey(String id);
+
+    /**
+     * Visits every document, in no particular order.
+     */
+    void forEach(BiConsumer<String, T> action);
+
+    default List<T> values() {
+        List<T> values = new ArrayList<>(size());
+        forEach((id, value) -> values.add(value));
+        return values;
+    }
+
+    int size();
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.repository.local;
+
+import org.example.model.Category;
+import org.example.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.example.repository.local.LocalFutures.supply;
+
+@Repository
+@Profile("memory | disk")
+public class LocalCategoryRepository implements CategoryRepository {
+
+    @Autowired
+    private DocumentTable<Category> categories;
+
+    // Configured by app.storage.latency.*; none by default
+    @Autowired(required = false)
+    private SimulatedLatency latency = SimulatedLatency.NONE;
+
+    // Seeded from the clock so that ETags handed out before a restart are not reused
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Object writeLock = new Object();
+
+    @Override
+    public CompletableFuture<String> saveAsync(Category category) {
+        if (category.getId() == null || category.getId().isEmpty()) {
+            category.setId(UUID.randomUUID().toString().replace("-", ""));
+        }
+        return supply(latency, () -> {
+            synchronized (writeLock) {
+                categories.put(category.getId(), category);
+                version.incrementAndGet();
+                return category.getId();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Category> updateAsync(Category category) {
+        return supply(latency, () -> {
+            synchronized (writeLock) {
+                if (!categories.containsKey(category.getId())) {
+                    return null;
+                }
+                categories.put(category.getId(), category);
+                version.incrementAndGet();
+                return category;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Category> findByIdAsync(String id) {
+        return supply(latency, () -> categories.get(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Category>> findAllAsync() {
+        return supply(latency, categories::values);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteByIdAsync(String id) {
+        return supply(latency, () -> {
+            synchronized (writeLock) {
+                boolean deleted = categories.remove(id);
+                if (deleted) {
+                    version.incrementAndGet();
+                }
+                return deleted;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> findVersionAsync() {
+        return supply(latency, () -> version.get());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsByIdAsync(String id) {
+        return supply(latency, () -> categories.containsKey(id));
+    }
+}
@@ -0,0 +1,398 @@
+package org.example.repository.local;
+
+import jakarta.annotation.PostConstruct;
+import org.example.exception.PreconditionFailedException;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.repository.ExpenseBulkWriter;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.ExpenseSummaries;
+import org.example.repository.ExpenseTotals;
+import org.example.repository.codec.ExpenseCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.example.repository.local.LocalFutures.pause;
+import static org.example.repository.local.LocalFutures.supply;
+
+/**
+ * Expenses in a local {@link DocumentTable}, with an in-memory index of each user's expense
+ * ids. Writes are serialized, so a read-modify-write never races another write and expected
+ * versions are checked directly against the stored one.
+ *
+ * <p>Monthly rollups are not stored: they are computed from the user's expenses when read,
+ * which is cheap without a network round trip per document, so they are always built.
+ */
+@Repository
+@Profile("memory | disk")
+public class LocalExpenseRepository implements ExpenseRepository {
+
+    // Like the Firestore queries, ordering by date leaves out expenses without one
+    private static final Comparator<Expense> NEWEST_FIRST = Comparator
+            .comparing(Expense::getDate, Comparator.reverseOrder())
+            .thenComparing(Expense::getId, Comparator.reverseOrder());
+
+    private final ExpenseCodec codec = ExpenseCodec.INSTANCE;
+
+    @Autowired
+    private DocumentTable<Expense> expenses;
+
+    // Configured by app.storage.latency.*; none by default
+    @Autowired(required = false)
+    private SimulatedLatency latency = SimulatedLatency.NONE;
+
+    private final Map<String, Set<String>> idsByUser = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    // Seeded from the clock so that versions and ETags handed out before a restart are not reused
+    private final long versionSeed = System.currentTimeMillis() * 1000;
+    private final AtomicLong versions = new AtomicLong(versionSeed);
+    private final Map<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void buildIndex() {
+        expenses.forEach((id, expense) -> index(expense));
+    }
+
+    @Override
+    public Stream<Expense> streamByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate) {
+        pause(latency);
+        return inRange(userId, startDate, endDate, true).stream();
+    }
+
+    @Override
+    public Stream<Expense> streamSummariesByUserId(String userId) {
+        pause(latency);
+        return inRange(userId, null, null, false).stream().map(LocalExpenseRepository::toSummary);
+    }
+
+    @Override
+    public CompletableFuture<String> saveAsync(Expense expense) {
+        if (expense.getId() == null || expense.getId().isEmpty()) {
+            return createAsync(expense).thenApply(Expense::getId);
+        }
+        return supply(latency, () -> write(expense.getId(), null, current -> {
+            if (current != null) {
+                expense.setCreatedAt(current.getCreatedAt());
+            }
+            return expense;
+        }).getId());
+    }
+
+    @Override
+    public CompletableFuture<Expense> createAsync(Expense expense) {
+        expense.setCreatedAt(null);
+        return supply(latency, () -> write(newId(), null, current -> expense));
+    }
+
+    @Override
+    public CompletableFuture<Expense> updateAsync(String id, String expectedVersion, Consumer<Expense> mutation) {
+        return supply(latency, () -> write(id, expectedVersion, current -> {
+            mutation.accept(current);
+            return current;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Expense> patchAsync(String id, String expectedVersion, Expense changes,
+                                                 Consumer<Expense> check) {
+        return supply(latency, () -> write(id, expectedVersion, current -> {
+            check.accept(current);
+            if (current == null) {
+                return null;
+            }
+            return codec.patch(current, changes);
+        }));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(String id, String expectedVersion, Consumer<Expense> check) {
+        return supply(latency, () -> {
+            write(id, expectedVersion, current -> {
+                check.accept(current);
+                return null;
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Expense> findByIdAsync(String id) {
+        return supply(latency, () -> expenses.get(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findAllAsync() {
+        return supply(latency, expenses::values);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findAllByIdAsync(List<String> ids) {
+        return supply(latency, () -> {
+            List<Expense> found = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                Expense expense = expenses.get(id);
+                if (expense != null) {
+                    found.add(expense);
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAsync(String userId) {
+        return supply(latency, () -> byUser(userId));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findPageByUserIdAsync(String userId, LocalDateTime afterDate,
+                                                                 String afterId, int limit) {
+        return supply(latency, () -> inRange(userId, null, null, true).stream()
+                .filter(expense -> afterId == null || isAfter(expense, afterDate, afterId))
+                .limit(limit)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByCategoryAsync(String category) {
+        return supply(latency, () -> {
+            List<Expense> found = new ArrayList<>();
+            expenses.forEach((id, expense) -> {
+                if (Objects.equals(category, expense.getCategory())) {
+                    found.add(expense);
+                }
+            });
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findByUserIdAndDateRangeAsync(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate) {
+        return supply(latency, () -> inRange(userId, startDate, endDate, true));
+    }
+
+    @Override
+    public CompletableFuture<ExpenseTotals> aggregateByUserIdAsync(String userId, LocalDateTime startDate,
+                                                                  LocalDateTime endDate) {
+        return supply(latency, () -> totals(inRange(userId, startDate, endDate, false)));
+    }
+
+    /**
+     * Writes are serialized and the expenses read under one call, so both halves agree.
+     */
+    @Override
+    public CompletableFuture<ExpenseSummaries> aggregateWithSummariesByUserIdAsync(String userId,
+                                                                                   LocalDateTime startDate,
+                                                                                   LocalDateTime endDate) {
+        return supply(latency, () -> {
+            List<Expense> matching = inRange(userId, startDate, endDate, false);
+            return new ExpenseSummaries(totals(matching), matching.stream()
+                    .map(LocalExpenseRepository::toSummary)
+                    .collect(Collectors.toList()));
+        });
+    }
+
+    // Like Firestore's aggregation: the sum and average only take expenses that have an amount
+    private static ExpenseTotals totals(List<Expense> expenses) {
+        double sum = 0;
+        long amounts = 0;
+        for (Expense expense : expenses) {
+            if (expense.getAmount() != null) {
+                sum += expense.getAmount();
+                amounts++;
+            }
+        }
+        return new ExpenseTotals(expenses.size(), sum, amounts > 0 ? sum / amounts : 0.0);
+    }
+
+    @Override
+    public CompletableFuture<List<Expense>> findSummariesByUserIdAsync(String userId, LocalDateTime startDate,
+                                                                      LocalDateTime endDate) {
+        return supply(latency, () -> inRange(userId, startDate, endDate, false).stream()
+                .map(LocalExpenseRepository::toSummary)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CompletableFuture<List<MonthlyRollup>> findRollupsByUserIdAsync(String userId) {
+        return supply(latency, () -> MonthlyRollup.summarize(byUser(userId).stream()));
+    }
+
+    /**
+     * Rollups are derived from the expenses on every read, so there is nothing to replace.
+     */
+    @Override
+    public CompletableFuture<Void> replaceRollupsAsync(String userId, List<MonthlyRollup> rollups, long version) {
+        return supply(latency, () -> null);
+    }
+
+    @Override
+    public CompletableFuture<Long> findVersionByUserIdAsync(String userId) {
+        AtomicLong version = userVersions.get(userId);
+        return supply(latency, () -> version != null ? version.get() : versionSeed);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsByIdAsync(String id) {
+        return supply(latency, () -> expenses.containsKey(id));
+    }
+
+    @Override
+    public ExpenseBulkWriter openBulkWriter() {
+        // Local writes are cheap enough to make one at a time
+        return new ExpenseBulkWriter() {
+            @Override
+            public CompletableFuture<String> create(Expense expense) {
+                return createAsync(expense).thenApply(Expense::getId);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Applies the change to the stored expense under the write lock. The change sees
+     * {@code null} if the expense is missing and returns {@code null} to delete it.
+     */
+    private Expense write(String id, String expectedVersion, UnaryOperator<Expense> change) {
+        synchronized (writeLock) {
+            Expense current = expenses.get(id);
+            // The change may mutate current, so take what is stored first
+            String storedOwner = current != null ? current.getUserId() : null;
+            String storedVersion = current != null ? current.getVersion() : null;
+            Expense next = change.apply(current);
+            // Checked after the change so that its checks (existence, ownership) are reported first
+            if (expectedVersion != null && !expectedVersion.equals(storedVersion)) {
+                throw new PreconditionFailedException("Expense " + id + " has been modified since the given version");
+            }
+
+            if (next == null) {
+                if (current != null) {
+                    expenses.remove(id);
+                    unindex(storedOwner, id);
+                    bumpVersion(storedOwner);
+                }
+                return null;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            next.setId(id);
+            if (current == null && next.getCreatedAt() == null) {
+                next.setCreatedAt(now);
+            }
+            next.setUpdatedAt(now);
+            next.setVersion(Long.toString(versions.incrementAndGet()));
+            expenses.put(id, next);
+
+            if (current != null) {
+                unindex(storedOwner, id);
+                if (!Objects.equals(storedOwner, next.getUserId())) {
+                    bumpVersion(storedOwner);
+                }
+            }
+            index(next);
+            bumpVersion(next.getUserId());
+            return next;
+        }
+    }
+
+    private List<Expense> byUser(String userId) {
+        Set<String> ids = idsByUser.get(userId);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<Expense> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Expense expense = expenses.get(id);
+            // The index can be a write behind the table; the stored owner is authoritative
+            if (expense != null && userId.equals(expense.getUserId())) {
+                found.add(expense);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A user's expenses within the optional date bounds, newest first if {@code ordered}.
+     */
+    private List<Expense> inRange(String userId, LocalDateTime startDate, LocalDateTime endDate, boolean ordered) {
+        boolean bounded = startDate != null || endDate != null;
+        List<Expense> found = new ArrayList<>();
+        for (Expense expense : byUser(userId)) {
+            LocalDateTime date = expense.getDate();
+            if (date == null) {
+                if (!bounded && !ordered) {
+                    found.add(expense);
+                }
+                continue;
+            }
+            if ((startDate == null || !date.isBefore(startDate)) && (endDate == null || !date.isAfter(endDate))) {
+                found.add(expense);
+            }
+        }
+        if (ordered) {
+            found.sort(NEWEST_FIRST);
+        }
+        return found;
+    }
+
+    private static boolean isAfter(Expense expense, LocalDateTime afterDate, String afterId) {
+        int byDate = expense.getDate().compareTo(afterDate);
+        return byDate < 0 || (byDate == 0 && expense.getId().compareTo(afterId) < 0);
+    }
+
+    private static Expense toSummary(Expense expense) {
+        Expense summary = new Expense();
+        summary.setId(expense.getId());
+        summary.setCategory(expense.getCategory());
+        summary.setAmount(expense.getAmount());
+        summary.setDate(expense.getDate());
+        return summary;
+    }
+
+    private void index(Expense expense) {
+        if (expense.getUserId() != null) {
+            idsByUser.computeIfAbsent(expense.getUserId(), key -> ConcurrentHashMap.newKeySet()).add(expense.getId());
+        }
+    }
+
+    private void unindex(String userId, String id) {
+        if (userId != null) {
+            idsByUser.computeIfPresent(userId, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private void bumpVersion(String userId) {
+        if (userId != null) {
+            userVersions.computeIfAbsent(userId, key -> new AtomicLong(versionSeed)).incrementAndGet();
+        }
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.repository.local;
+
+import org.example.metrics.RequestStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Local operations finish before returning; this hands their outcome back the way the
+ * Firestore repositories do, failures included, rather than throwing from an async method,
+ * after any simulated latency. Each call counts as a round trip of the current request.
+ */
+final class LocalFutures {
+
+    private LocalFutures() {
+    }
+
+    static <T> CompletableFuture<T> supply(SimulatedLatency latency, Supplier<T> operation) {
+        RequestStats request = RequestStats.current();
+        long start = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.completedFuture(operation.get());
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        if (request == null) {
+            return latency.delay(result);
+        }
+        CompletableFuture<T> completion = new CompletableFuture<>();
+        latency.delay(result).whenComplete((value, error) -> {
+            request.recordRoundTrip(System.nanoTime() - start);
+            RequestStats.complete(request, completion, value, error);
+        });
+        return completion;
+    }
+
+    /**
+     * Blocks for the round trip of a synchronous call, such as opening a stream.
+     */
+    static void pause(SimulatedLatency latency) {
+        long start = System.nanoTime();
+        latency.pause();
+        RequestStats request = RequestStats.current();
+        if (request != null) {
+            request.recordRoundTrip(System.nanoTime() - start);
+        }
+    }
+}
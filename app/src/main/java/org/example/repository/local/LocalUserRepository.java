@@ -0,0 +1,204 @@
+package org.example.repository.local;
+
+import jakarta.annotation.PostConstruct;
+import org.example.model.User;
+import org.example.repository.UserChangedEvent;
+import org.example.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.example.repository.local.LocalFutures.pause;
+import static org.example.repository.local.LocalFutures.supply;
+
+/**
+ * Users in a local {@link DocumentTable}, with in-memory indexes from lowercased username and
+ * email to user id. Writes are serialized, so checking and claiming a name is atomic.
+ */
+@Repository
+@Profile("memory | disk")
+public class LocalUserRepository implements UserRepository {
+
+    @Autowired
+    private DocumentTable<User> users;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Configured by app.storage.latency.*; none by default
+    @Autowired(required = false)
+    private SimulatedLatency latency = SimulatedLatency.NONE;
+
+    private final Map<String, String> idsByUsername = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByEmail = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    @PostConstruct
+    void buildIndexes() {
+        users.forEach((id, user) -> index(user));
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        pause(latency);
+        return users.values().stream();
+    }
+
+    @Override
+    public int updateLastLoginTimes(Map<String, LocalDateTime> lastLoginTimes) {
+        pause(latency);
+        int failed = 0;
+        synchronized (writeLock) {
+            for (Map.Entry<String, LocalDateTime> entry : lastLoginTimes.entrySet()) {
+                User user = users.get(entry.getKey());
+                if (user == null) {
+                    failed++;
+                    continue;
+                }
+                user.setLastLoginAt(entry.getValue());
+                users.put(user.getId(), user);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public CompletableFuture<String> saveAsync(User user) {
+        return supply(latency, () -> {
+            synchronized (writeLock) {
+                if (user.getId() == null || user.getId().isEmpty()) {
+                    user.setId(UUID.randomUUID().toString().replace("-", ""));
+                    user.setCreatedAt(LocalDateTime.now());
+                }
+                user.setUpdatedAt(LocalDateTime.now());
+
+                checkOwner(idsByUsername, user.getUsername(), user.getId(), "Error: Username is already taken!");
+                checkOwner(idsByEmail, user.getEmail(), user.getId(), "Error: Email is already in use!");
+
+                User previous = users.get(user.getId());
+                if (previous != null) {
+                    // Written behind by LastLoginRecorder; the copy being saved may predate it
+                    user.setLastLoginAt(previous.getLastLoginAt());
+                }
+                users.put(user.getId(), user);
+                if (previous != null) {
+                    unindex(previous);
+                }
+                index(user);
+                return user.getId();
+            }
+        }).thenApply(id -> {
+            eventPublisher.publishEvent(new UserChangedEvent(id, user));
+            return id;
+        });
+    }
+
+    @Override
+    public CompletableFuture<User> findByIdAsync(String id) {
+        return supply(latency, () -> users.get(id));
+    }
+
+    @Override
+    public CompletableFuture<User> findByUsernameAsync(String username) {
+        return supply(latency, () -> findByIndex(idsByUsername, username));
+    }
+
+    @Override
+    public CompletableFuture<User> findByEmailAsync(String email) {
+        return supply(latency, () -> findByIndex(idsByEmail, email));
+    }
+
+    @Override
+    public CompletableFuture<User> findByUsernameOrEmailAsync(String usernameOrEmail) {
+        return supply(latency, () -> {
+            User user = findByIndex(idsByUsername, usernameOrEmail);
+            return user != null ? user : findByIndex(idsByEmail, usernameOrEmail);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAllAsync() {
+        return supply(latency, users::values);
+    }
+
+    /**
+     * The indexes are rebuilt from every stored user at startup, so there is nothing to add.
+     */
+    @Override
+    public CompletableFuture<Void> indexAsync(User user) {
+        return supply(latency, () -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> markIndexCompleteAsync() {
+        return supply(latency, () -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteByIdAsync(String id) {
+        return supply(latency, () -> {
+            synchronized (writeLock) {
+                User previous = users.get(id);
+                if (previous != null) {
+                    users.remove(id);
+                    unindex(previous);
+                }
+                return (Void) null;
+            }
+        }).thenApply(ignored -> {
+            eventPublisher.publishEvent(new UserChangedEvent(id, null));
+            return null;
+        });
+    }
+
+    private User findByIndex(Map<String, String> index, String value) {
+        String key = key(value);
+        String id = key != null ? index.get(key) : null;
+        return id != null ? users.get(id) : null;
+    }
+
+    private static void checkOwner(Map<String, String> index, String value, String userId, String takenMessage) {
+        String key = key(value);
+        String owner = key != null ? index.get(key) : null;
+        if (owner != null && !owner.equals(userId)) {
+            throw new RuntimeException(takenMessage);
+        }
+    }
+
+    private void index(User user) {
+        String username = key(user.getUsername());
+        if (username != null) {
+            idsByUsername.put(username, user.getId());
+        }
+        String email = key(user.getEmail());
+        if (email != null) {
+            idsByEmail.put(email, user.getId());
+        }
+    }
+
+    private void unindex(User user) {
+        String username = key(user.getUsername());
+        if (username != null) {
+            idsByUsername.remove(username, user.getId());
+        }
+        String email = key(user.getEmail());
+        if (email != null) {
+            idsByEmail.remove(email, user.getId());
+        }
+    }
+
+    private static String key(String value) {
+        // Lowercase for case-insensitive uniqueness, as with the Firestore index documents
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.repository.local;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Documents kept in an append-only log file, Bitcask style: every put or remove appends a
+ * record, and an in-memory key directory maps each id to where its latest value sits in the
+ * log, so a read is a single positional read. Records carry a CRC; a write torn by a crash is
+ * detected and cut off when the log is reopened.
+ *
+ * <p>On close the key directory is saved next to the log as an index file. Reopening after a
+ * clean close loads it and replays only what was appended since, instead of the whole log.
+ * Superseded records are never reclaimed, so the log grows with every write.
+ */
+public class LogDocumentTable<T> implements DocumentTable<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogDocumentTable.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // crc (4), type (1), id length (4), value length (4); the crc covers everything after it
+    private static final int HEADER_SIZE = 13;
+    private static final int INDEX_MAGIC = 0x4C444931;
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel channel;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final boolean fsync;
+
+    private final Map<String, Location> keyDirectory = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private long end;
+
+    /**
+     * Opens, or creates, {@code <name>.log} in the directory.
+     *
+     * @param fsync force every write to disk before returning, rather than leaving it to the OS
+     */
+    public LogDocumentTable(Path directory, String name, Class<T> type, ObjectMapper mapper, boolean fsync)
+            throws IOException {
+        Files.createDirectories(directory);
+        this.logPath = directory.resolve(name + ".log");
+        this.indexPath = directory.resolve(name + ".idx");
+        this.reader = mapper.readerFor(type);
+        this.writer = mapper.writerFor(type);
+        this.fsync = fsync;
+        this.channel = FileChannel.open(logPath, CREATE, READ, WRITE);
+        this.end = replay(loadIndex(channel.size()));
+        logger.info("Opened {} with {} documents", logPath, keyDirectory.size());
+    }
+
+    @Override
+    public T get(String id) {
+        Location location = keyDirectory.get(id);
+        return location != null ? read(location) : null;
+    }
+
+    @Override
+    public void put(String id, T value) {
+        byte[] bytes;
+        try {
+            bytes = writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (writeLock) {
+            long position = append(PUT, id, bytes);
+            keyDirectory.put(id, new Location(position, bytes.length));
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        synchronized (writeLock) {
+            if (!keyDirectory.containsKey(id)) {
+                return false;
+            }
+            append(DELETE, id, new byte[0]);
+            keyDirectory.remove(id);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        return keyDirectory.containsKey(id);
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, T> action) {
+        keyDirectory.forEach((id, location) -> action.accept(id, read(location)));
+    }
+
+    @Override
+    public int size() {
+        return keyDirectory.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            channel.force(false);
+            writeIndex();
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends one record and returns the position of its value. Callers hold the write lock.
+     */
+    private long append(byte type, String id, byte[] value) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + idBytes.length + value.length);
+        record.position(4);
+        record.put(type).putInt(idBytes.length).putInt(value.length).put(idBytes).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+
+        try {
+            long position = end;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            long valuePosition = end + HEADER_SIZE + idBytes.length;
+            end = position;
+            return valuePosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private T read(Location location) {
+        // Records are never overwritten, so this is safe against concurrent appends
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        try {
+            long position = location.position;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of " + logPath);
+                }
+                position += read;
+            }
+            return reader.readValue(buffer.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rebuilds the key directory from the records after {@code from}, truncating the log at
+     * the first record that is incomplete or fails its CRC. Returns the end of the log.
+     */
+    private long replay(long from) throws IOException {
+        long size = channel.size();
+        long position = from;
+        try (InputStream file = Files.newInputStream(logPath)) {
+            file.skipNBytes(from);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024));
+            while (size - position >= HEADER_SIZE) {
+                int crc = in.readInt();
+                byte type = in.readByte();
+                int idLength = in.readInt();
+                int valueLength = in.readInt();
+                if (idLength < 0 || valueLength < 0
+                        || position + HEADER_SIZE + (long) idLength + valueLength > size) {
+                    break;
+                }
+                byte[] body = new byte[idLength + valueLength];
+                in.readFully(body);
+
+                CRC32 check = new CRC32();
+                check.update(ByteBuffer.allocate(HEADER_SIZE - 4).put(type).putInt(idLength).putInt(valueLength).array());
+                check.update(body);
+                if ((int) check.getValue() != crc || (type != PUT && type != DELETE)) {
+                    break;
+                }
+
+                String id = new String(body, 0, idLength, StandardCharsets.UTF_8);
+                if (type == PUT) {
+                    keyDirectory.put(id, new Location(position + HEADER_SIZE + idLength, valueLength));
+                } else {
+                    keyDirectory.remove(id);
+                }
+                position += HEADER_SIZE + idLength + valueLength;
+            }
+        }
+        if (position < size) {
+            logger.warn("Truncating {} at {}: the {} bytes after it are incomplete or corrupt",
+                    logPath, position, size - position);
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    /**
+     * Loads the key directory saved by the last clean close, if there is a usable one, and
+     * returns the log length it covers. The index is deleted once read: after a crash the
+     * whole log is replayed.
+     */
+    private long loadIndex(long logSize) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return 0;
+        }
+        byte[] bytes = Files.readAllBytes(indexPath);
+        Files.delete(indexPath);
+        if (bytes.length < Long.BYTES) {
+            return 0;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong()) {
+            logger.warn("Ignoring {}: checksum mismatch", indexPath);
+            return 0;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != INDEX_MAGIC) {
+            return 0;
+        }
+        long logLength = in.readLong();
+        if (logLength > logSize) {
+            logger.warn("Ignoring {}: it covers more than the log holds", indexPath);
+            return 0;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            keyDirectory.put(id, new Location(in.readLong(), in.readInt()));
+        }
+        return logLength;
+    }
+
+    private void writeIndex() throws IOException {
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc));
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(end);
+            // The directory cannot change while the write lock is held
+            out.writeInt(keyDirectory.size());
+            for (Map.Entry<String, Location> entry : keyDirectory.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().position);
+                out.writeInt(entry.getValue().length);
+            }
+            out.flush();
+            // The checksum itself is written past the checked stream
+            DataOutputStream trailer = new DataOutputStream(file);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private record Location(long position, int length) {
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.repository.local;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Documents held on the heap; nothing survives a restart.
+ */
+public class MemoryDocumentTable<T> implements DocumentTable<T> {
+
+    private final Map<String, T> documents = new ConcurrentHashMap<>();
+    private final UnaryOperator<T> copy;
+
+    /**
+     * @param copy makes an independent copy of a document
+     */
+    public MemoryDocumentTable(UnaryOperator<T> copy) {
+        this.copy = copy;
+    }
+
+    @Override
+    public T get(String id) {
+        T value = documents.get(id);
+        return value != null ? copy.apply(value) : null;
+    }
+
+    @Override
+    public void put(String id, T value) {
+        documents.put(id, copy.apply(value));
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return documents.remove(id) != null;
+    }
+
+    @Override
+    public boolean containsKey(String id) {
+        return documents.containsKey(id);
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, T> action) {
+        documents.forEach((id, value) -> action.accept(id, copy.apply(value)));
+    }
+
+    @Override
+    public int size() {
+        return documents.size();
+    }
+}
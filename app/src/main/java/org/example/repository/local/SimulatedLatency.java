@@ -0,0 +1,58 @@
+package org.example.repository.local;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A delay added to every local repository call, so that the local backends can stand in for
+ * Firestore in load tests: a base round trip plus uniform jitter. Async results are completed
+ * after the delay without holding a thread, as a network response would be; streaming reads
+ * block the caller once when opened.
+ */
+public class SimulatedLatency {
+
+    public static final SimulatedLatency NONE = new SimulatedLatency(0, 0);
+
+    private final long baseMicros;
+    private final long jitterMicros;
+
+    public SimulatedLatency(long baseMillis, long jitterMillis) {
+        this.baseMicros = TimeUnit.MILLISECONDS.toMicros(baseMillis);
+        this.jitterMicros = TimeUnit.MILLISECONDS.toMicros(jitterMillis);
+    }
+
+    public boolean isEnabled() {
+        return baseMicros > 0 || jitterMicros > 0;
+    }
+
+    /**
+     * Completes with the same outcome as {@code result}, one simulated round trip later.
+     */
+    public <T> CompletableFuture<T> delay(CompletableFuture<T> result) {
+        if (!isEnabled()) {
+            return result;
+        }
+        Executor later = CompletableFuture.delayedExecutor(nextMicros(), TimeUnit.MICROSECONDS);
+        return result.whenCompleteAsync((value, error) -> { }, later);
+    }
+
+    /**
+     * Blocks for one simulated round trip.
+     */
+    public void pause() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(nextMicros());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long nextMicros() {
+        return baseMicros + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(jitterMicros + 1) : 0);
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.security;
 
+import io.jsonwebtoken.Claims;
 import org.example.model.User;
 import org.example.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +17,12 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private PrincipalVersionRegistry principalVersionRegistry;
+
     @Override
     public UserDetails loadUserByUsername(String usernameOrEmail) throws UsernameNotFoundException {
         try {
@@ -29,7 +36,38 @@ public class CustomUserDetailsService implements UserDetailsService {
         }
     }
 
+    /**
+     * Called on every authenticated request, so the principal is served from
+     * {@link PrincipalCache} and Firestore is only read on a miss.
+     */
     public UserDetails loadUserById(String id) {
+        return principalCache.get(id, () -> fetchUserById(id));
+    }
+
+    /**
+     * Resolves the principal for a verified token. Self-contained tokens are trusted as-is
+     * unless the user changed since they were issued; subject-only tokens and stale ones
+     * fall back to {@link #loadUserById}.
+     */
+    public UserDetails loadUserFromClaims(Claims claims) {
+        String userId = claims.getSubject();
+        UserPrincipal principal = UserPrincipal.fromClaims(claims);
+        if (principal == null) {
+            return loadUserById(userId);
+        }
+
+        String fingerprint = claims.get(UserPrincipal.CLAIM_FINGERPRINT, String.class);
+        switch (principalVersionRegistry.check(userId, fingerprint)) {
+            case CURRENT:
+                return principal;
+            case REVOKED:
+                throw new UsernameNotFoundException("User access revoked: " + userId);
+            default:
+                return loadUserById(userId);
+        }
+    }
+
+    private UserPrincipal fetchUserById(String id) {
         try {
             User user = userRepository.findById(id);
             if (user == null) {
@@ -1,9 +1,14 @@
 package org.example.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.example.metrics.RequestStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +20,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 // Remove @Component annotation since we define it as @Bean in SecurityConfig
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -26,15 +32,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer validTimer;
+    private Timer invalidTimer;
+
+    @PostConstruct
+    void initTimers() {
+        validTimer = validationTimer("valid");
+        invalidTimer = validationTimer("invalid");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                    FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String userId = jwtUtils.getUserIdFromJwtToken(jwt);
-
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
+            Claims claims = jwt != null ? verify(jwt) : null;
+            if (claims != null) {
+                long start = System.nanoTime();
+                UserDetails userDetails = customUserDetailsService.loadUserFromClaims(claims);
+                RequestStats.recordPhase("principal", System.nanoTime() - start);
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -48,6 +67,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Async controller results are written in a second dispatch, which is authorized again.
+     * Sessions are stateless, so the authentication has to be restored from the token; the
+     * verified claims are cached, so this costs a cache lookup.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    private Claims verify(String jwt) {
+        long start = System.nanoTime();
+        Claims claims = jwtUtils.verifyJwtToken(jwt);
+        long nanos = System.nanoTime() - start;
+        (claims != null ? validTimer : invalidTimer).record(nanos, TimeUnit.NANOSECONDS);
+        RequestStats.recordPhase("jwt", nanos);
+        return claims;
+    }
+
+    private Timer validationTimer(String outcome) {
+        return Timer.builder("jwt.validation")
+                .description("Verification of bearer tokens, including the claims cache lookup")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
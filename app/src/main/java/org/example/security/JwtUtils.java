@@ -1,7 +1,13 @@
 package org.example.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +15,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
@@ -21,15 +29,54 @@ public class JwtUtils {
     @Value("${app.jwtExpirationMs:86400000}") // 24 hours
     private int jwtExpirationMs;
 
+    // Embed the principal in the token so requests can authenticate without a user lookup
+    @Value("${app.jwtSelfContained:true}")
+    private boolean selfContained;
+
+    @Value("${app.security.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    @Value("${app.security.claims-cache.ttl-seconds:300}")
+    private long claimsCacheTtlSeconds;
+
+    // Key and parser are immutable and thread-safe; derive them once instead of per token
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    // Claims of recently verified tokens, keyed by the token's SHA-256 so raw tokens are not held
+    private Cache<String, Claims> verifiedClaims;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedClaims = CacheBuilder.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfterWrite(claimsCacheTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        return signingKey;
     }
 
     public String generateJwtToken(Authentication authentication) {
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+        return generateJwtToken((UserPrincipal) authentication.getPrincipal());
+    }
 
-        return Jwts.builder()
-                .setSubject(userPrincipal.getId())
+    public String generateJwtToken(UserPrincipal userPrincipal) {
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(userPrincipal.getId());
+        if (selfContained) {
+            builder.claim(UserPrincipal.CLAIM_USERNAME, userPrincipal.getUsername())
+                    .claim(UserPrincipal.CLAIM_EMAIL, userPrincipal.getEmail())
+                    .claim(UserPrincipal.CLAIM_ROLES, userPrincipal.getRoles())
+                    .claim(UserPrincipal.CLAIM_FINGERPRINT, userPrincipal.getFingerprint());
+        }
+        return builder
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS512)
@@ -46,21 +93,41 @@ public class JwtUtils {
     }
 
     public String getUserIdFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        Claims claims = verifyJwtToken(token);
+        return claims != null ? claims.getSubject() : null;
     }
 
     public boolean validateJwtToken(String authToken) {
+        return verifyJwtToken(authToken) != null;
+    }
+
+    /**
+     * Verifies the token's signature and expiry in a single pass and returns its claims,
+     * or {@code null} if the token is not valid. Successful verifications are cached, so a
+     * token presented repeatedly is only HMAC-checked once per cache lifetime.
+     */
+    public Claims verifyJwtToken(String authToken) {
+        if (authToken == null || authToken.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+
+        String digest = Hashing.sha256().hashString(authToken, StandardCharsets.UTF_8).toString();
+        Claims cached = verifiedClaims.getIfPresent(digest);
+        if (cached != null) {
+            Date expiration = cached.getExpiration();
+            if (expiration == null || expiration.after(new Date())) {
+                return cached;
+            }
+            verifiedClaims.invalidate(digest);
+            logger.error("JWT token is expired: {}", expiration);
+            return null;
+        }
+
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+            verifiedClaims.put(digest, claims);
+            return claims;
         } catch (SecurityException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -71,7 +138,20 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("Invalid JWT: {}", e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Hit, miss and eviction counters of the verified-claims cache since startup.
+     */
+    public CacheStats claimsCacheStats() {
+        return verifiedClaims.stats();
+    }
+
+    public long claimsCacheSize() {
+        return verifiedClaims.size();
     }
-}
\ No newline at end of file
+}
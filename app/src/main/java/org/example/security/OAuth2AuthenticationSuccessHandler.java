@@ -26,6 +26,7 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
     
     private final OAuth2UserService oAuth2UserService;
     private final JwtUtils jwtUtils;
+    private final CustomUserDetailsService customUserDetailsService;
     private final ObjectMapper objectMapper;
     
     @Value("${app.oauth2.authorized-redirect-uris:http://localhost:3000/oauth2/redirect}")
@@ -64,7 +65,8 @@ public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationS
             log.info("OAuth2 user processed successfully: {}", userResponse.getEmail());
             
             // Generate JWT token
-            String token = jwtUtils.generateJwtToken(userResponse.getId());
+            UserPrincipal principal = (UserPrincipal) customUserDetailsService.loadUserById(userResponse.getId());
+            String token = jwtUtils.generateJwtToken(principal);
             log.info("JWT token generated successfully for user: {}", userResponse.getId());
             
             // Check if this is an API request
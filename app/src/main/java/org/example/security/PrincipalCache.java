@@ -0,0 +1,79 @@
+package org.example.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import jakarta.annotation.PostConstruct;
+import org.example.repository.UserChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, time-limited cache of authenticated principals keyed by user id.
+ * Entries are dropped as soon as the user is saved or deleted on this instance; the TTL
+ * bounds how long another instance's change can go unnoticed.
+ */
+@Component
+public class PrincipalCache {
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, UserPrincipal> cache;
+
+    @PostConstruct
+    void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached principal or loads it; concurrent misses for the same id share one load.
+     */
+    public UserPrincipal get(String userId, Callable<UserPrincipal> loader) {
+        try {
+            return cache.get(userId, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to load principal for user: " + userId, e.getCause());
+        }
+    }
+
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        logger.debug("Evicting cached principal for user {}", event.getUserId());
+        invalidate(event.getUserId());
+    }
+
+    /**
+     * Hit, miss, load and eviction counters since startup.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
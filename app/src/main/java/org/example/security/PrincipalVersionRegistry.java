@@ -0,0 +1,65 @@
+package org.example.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import org.example.repository.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks users whose principal changed on this instance since their tokens were issued.
+ * Self-contained tokens carry a fingerprint of the principal they were issued for; when the
+ * user's roles or identity change the fingerprint no longer matches, and deleted or disabled
+ * users are revoked outright. Entries only need to outlive the tokens they can invalidate.
+ */
+@Component
+public class PrincipalVersionRegistry {
+
+    private static final String REVOKED = "";
+
+    public enum Status { CURRENT, STALE, REVOKED }
+
+    @Value("${app.jwtExpirationMs:86400000}")
+    private long jwtExpirationMs;
+
+    @Value("${app.security.principal-versions.max-size:100000}")
+    private long maxSize;
+
+    private Cache<String, String> fingerprints;
+
+    @PostConstruct
+    void init() {
+        fingerprints = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(jwtExpirationMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public Status check(String userId, String tokenFingerprint) {
+        String current = fingerprints.getIfPresent(userId);
+        if (current == null) {
+            return Status.CURRENT;
+        }
+        if (current.equals(REVOKED)) {
+            return Status.REVOKED;
+        }
+        return current.equals(tokenFingerprint) ? Status.CURRENT : Status.STALE;
+    }
+
+    public void revoke(String userId) {
+        fingerprints.put(userId, REVOKED);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.isDeleted() || !event.getUser().isEnabled()) {
+            revoke(event.getUserId());
+        } else {
+            fingerprints.put(event.getUserId(), UserPrincipal.create(event.getUser()).getFingerprint());
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package org.example.security;
 
+import com.google.common.hash.Hashing;
+import io.jsonwebtoken.Claims;
 import org.example.model.User;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class UserPrincipal implements UserDetails {
+    static final String CLAIM_USERNAME = "username";
+    static final String CLAIM_EMAIL = "email";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_FINGERPRINT = "fp";
+
     private String id;
     private String username;
     private String email;
     private String password;
+    private String firstName;
+    private String lastName;
     private Collection<? extends GrantedAuthority> authorities;
 
     public UserPrincipal(String id, String username, String email, String password,
@@ -25,6 +35,14 @@ public class UserPrincipal implements UserDetails {
         this.authorities = authorities;
     }
 
+    public UserPrincipal(String id, String username, String email, String password,
+                        String firstName, String lastName,
+                        Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, email, password, authorities);
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
     public static UserPrincipal create(User user) {
         List<GrantedAuthority> authorities = user.getRoles().stream()
                 .map(role -> new SimpleGrantedAuthority(role))
@@ -35,10 +53,50 @@ public class UserPrincipal implements UserDetails {
                 user.getUsername(),
                 user.getEmail(),
                 user.getPassword(),
+                user.getFirstName(),
+                user.getLastName(),
+                authorities
+        );
+    }
+
+    /**
+     * Rebuilds a principal from the claims of a verified self-contained token, or returns
+     * {@code null} if the token only carries a subject.
+     */
+    public static UserPrincipal fromClaims(Claims claims) {
+        String username = claims.get(CLAIM_USERNAME, String.class);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (username == null || roles == null) {
+            return null;
+        }
+
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+                .collect(Collectors.toList());
+
+        return new UserPrincipal(
+                claims.getSubject(),
+                username,
+                claims.get(CLAIM_EMAIL, String.class),
+                null,
                 authorities
         );
     }
 
+    public List<String> getRoles() {
+        return authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Short digest of the fields a self-contained token asserts; it changes whenever any of them do.
+     */
+    public String getFingerprint() {
+        String material = id + "|" + username + "|" + email + "|" + String.join(",", getRoles());
+        return Hashing.sha256().hashString(material, StandardCharsets.UTF_8).toString().substring(0, 16);
+    }
+
     public String getId() {
         return id;
     }
@@ -47,6 +105,17 @@ public class UserPrincipal implements UserDetails {
         return email;
     }
 
+    /**
+     * Only set when the principal was loaded from the user document, not from token claims.
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
     @Override
     public String getUsername() {
         return username;
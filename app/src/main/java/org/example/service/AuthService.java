@@ -15,7 +15,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 
@@ -34,6 +33,9 @@ public class AuthService {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private LastLoginRecorder lastLoginRecorder;
+
     public AuthResponse login(LoginRequest loginRequest) throws ExecutionException, InterruptedException {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
@@ -47,30 +49,16 @@ public class AuthService {
 
         UserPrincipal userDetails = (UserPrincipal) authentication.getPrincipal();
 
-        // Update last login time
-        User user = userRepository.findById(userDetails.getId());
-        if (user != null) {
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
-        }
+        // Recorded in memory and written behind; the principal already carries the profile
+        lastLoginRecorder.record(userDetails.getId());
 
         return new AuthResponse(jwt, userDetails.getId(), userDetails.getUsername(),
-                userDetails.getEmail(), user.getFirstName(), user.getLastName(),
+                userDetails.getEmail(), userDetails.getFirstName(), userDetails.getLastName(),
                 Arrays.asList(userDetails.getAuthorities().iterator().next().getAuthority()));
     }
 
     public String register(RegisterRequest registerRequest) throws ExecutionException, InterruptedException {
-        // Check if username exists
-        if (userRepository.existsByUsername(registerRequest.getUsername())) {
-            throw new RuntimeException("Error: Username is already taken!");
-        }
-
-        // Check if email exists
-        if (userRepository.existsByEmail(registerRequest.getEmail())) {
-            throw new RuntimeException("Error: Email is already in use!");
-        }
-
-        // Create new user
+        // Create new user; username and email uniqueness is enforced atomically by the save
         User user = new User();
         user.setUsername(registerRequest.getUsername());
         user.setEmail(registerRequest.getEmail());
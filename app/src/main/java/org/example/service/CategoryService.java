@@ -1,12 +1,15 @@
 package org.example.service;
 
+import org.example.dto.Versioned;
 import org.example.model.Category;
 import org.example.repository.CategoryRepository;
+import org.example.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -15,37 +18,55 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
-    public Category createCategory(Category category) throws ExecutionException, InterruptedException {
-        String id = categoryRepository.save(category);
-        return categoryRepository.findById(id);
+    // Writes are single round trips: the response is the category as written, and a missing
+    // category is reported by the write itself rather than by a read beforehand
+
+    public CompletableFuture<Category> createCategory(Category category) {
+        return categoryRepository.saveAsync(category)
+                .thenApply(savedId -> category);
     }
 
-    public Category updateCategory(String id, Category category) throws ExecutionException, InterruptedException {
-        if (!categoryRepository.existsById(id)) {
-            throw new RuntimeException("Category not found with id: " + id);
-        }
+    public CompletableFuture<Category> updateCategory(String id, Category category) {
         category.setId(id);
-        categoryRepository.save(category);
-        return category;
+        return categoryRepository.updateAsync(category)
+                .thenApply(updated -> {
+                    if (updated == null) {
+                        throw new RuntimeException("Category not found with id: " + id);
+                    }
+                    return updated;
+                });
     }
 
-    public Category getCategoryById(String id) throws ExecutionException, InterruptedException {
-        Category category = categoryRepository.findById(id);
-        if (category == null) {
-            throw new RuntimeException("Category not found with id: " + id);
-        }
-        return category;
+    public CompletableFuture<Category> getCategoryById(String id) {
+        return categoryRepository.findByIdAsync(id)
+                .thenApply(category -> {
+                    if (category == null) {
+                        throw new RuntimeException("Category not found with id: " + id);
+                    }
+                    return category;
+                });
     }
 
-    public List<Category> getAllCategories() throws ExecutionException, InterruptedException {
-        return categoryRepository.findAll();
+    public CompletableFuture<List<Category>> getAllCategories() {
+        return categoryRepository.findAllAsync();
     }
 
-    public void deleteCategory(String id) throws ExecutionException, InterruptedException {
-        if (!categoryRepository.existsById(id)) {
-            throw new RuntimeException("Category not found with id: " + id);
-        }
-        categoryRepository.deleteById(id);
+    /**
+     * Skips the query when ifNoneMatch still names the current version of the categories;
+     * the result then has no body.
+     */
+    public CompletableFuture<Versioned<List<Category>>> getAllCategories(String ifNoneMatch) {
+        return ETags.ifChanged(categoryRepository.findVersionAsync(), "categories", ifNoneMatch,
+                categoryRepository::findAllAsync);
+    }
+
+    public CompletableFuture<Void> deleteCategory(String id) {
+        return categoryRepository.deleteByIdAsync(id)
+                .thenAccept(deleted -> {
+                    if (!deleted) {
+                        throw new RuntimeException("Category not found with id: " + id);
+                    }
+                });
     }
 
     public void initializeDefaultCategories() throws ExecutionException, InterruptedException {
@@ -69,4 +90,4 @@ public class CategoryService {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,202 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.example.dto.BulkImportResponse;
+import org.example.dto.ExpenseRequest;
+import org.example.repository.ExpenseBulkWriter;
+import org.example.repository.ExpenseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Streams expenses from a JSON array or NDJSON request body straight into a bulk writer.
+ * Rows are parsed one at a time and at most {@code maxInFlight} writes are outstanding,
+ * so memory stays flat regardless of the upload size.
+ */
+@Service
+public class ExpenseImportService {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${app.import.max-rows:100000}")
+    private int maxRows;
+
+    @Value("${app.import.max-in-flight:1000}")
+    private int maxInFlight;
+
+    public BulkImportResponse importExpenses(InputStream body, boolean ndjson)
+            throws IOException, ExecutionException, InterruptedException {
+        String currentUserId = authService.getCurrentUserId();
+        if (currentUserId == null) {
+            throw new RuntimeException("User not authenticated");
+        }
+
+        long start = System.currentTimeMillis();
+        ImportRun run = new ImportRun(currentUserId);
+        try (ExpenseBulkWriter writer = expenseRepository.openBulkWriter()) {
+            run.writer = writer;
+            if (ndjson) {
+                readNdjson(body, run);
+            } else {
+                readJsonArray(body, run);
+            }
+        } finally {
+            // Closing flushes the writer; taking every permit waits for the last row callbacks
+            run.inFlight.acquire(maxInFlight);
+        }
+
+        List<BulkImportResponse.RowError> errors;
+        synchronized (run.errors) {
+            errors = new ArrayList<>(run.errors);
+        }
+        errors.sort(Comparator.comparingInt(BulkImportResponse.RowError::getRow));
+        long elapsedMs = System.currentTimeMillis() - start;
+        logger.info("Imported {}/{} expenses for user {} in {} ms",
+                run.imported.get(), run.received, currentUserId, elapsedMs);
+
+        return new BulkImportResponse(run.received, run.imported.get(), run.failed.get(), elapsedMs,
+                errors, run.failed.get() > errors.size());
+    }
+
+    private void readNdjson(InputStream body, ImportRun run) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // Blank lines are not rows, so a trailing newline cannot trip the limit
+            if (line.isBlank()) {
+                continue;
+            }
+            if (run.limitReached()) {
+                break;
+            }
+            int row = ++run.received;
+            try {
+                submit(row, objectMapper.readTree(line), run);
+            } catch (JsonProcessingException e) {
+                run.fail(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private void readJsonArray(InputStream body, ImportRun run) throws IOException, InterruptedException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("Request body must be a JSON array of expenses");
+            }
+            while (true) {
+                int row = run.received + 1;
+                try {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.END_ARRAY || token == null || run.limitReached()) {
+                        break;
+                    }
+                    run.received = row;
+                    submit(row, parser.readValueAsTree(), run);
+                } catch (JsonProcessingException e) {
+                    // A syntax error leaves the parser unusable, so the rest of the body is dropped
+                    run.fail(row, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+                    break;
+                }
+            }
+        }
+    }
+
+    private void submit(int row, JsonNode node, ImportRun run) throws InterruptedException {
+        ExpenseRequest request;
+        try {
+            request = objectMapper.treeToValue(node, ExpenseRequest.class);
+        } catch (JsonProcessingException e) {
+            run.fail(row, "Invalid expense: " + e.getOriginalMessage());
+            return;
+        }
+
+        Set<ConstraintViolation<ExpenseRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            run.fail(row, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+
+        run.inFlight.acquire();
+        run.writer.create(ExpenseService.newExpense(request, run.userId))
+                .whenComplete((id, error) -> {
+                    if (error != null) {
+                        run.fail(row, "Write failed: " + error.getMessage());
+                    } else {
+                        run.imported.incrementAndGet();
+                    }
+                    run.inFlight.release();
+                });
+    }
+
+    private class ImportRun {
+        private final String userId;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<BulkImportResponse.RowError> errors = new ArrayList<>();
+        private ExpenseBulkWriter writer;
+        private int received;
+
+        private ImportRun(String userId) {
+            this.userId = userId;
+        }
+
+        private boolean limitReached() {
+            if (received < maxRows) {
+                return false;
+            }
+            fail(received + 1, "Row limit of " + maxRows + " reached, remaining rows were not imported");
+            return true;
+        }
+
+        private void fail(int row, String message) {
+            failed.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new BulkImportResponse.RowError(row, message));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.service;
+
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.model.User;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds monthly rollups from the raw expenses. Expense writes keep rollups current on
+ * their own; this backfills users whose expenses predate rollups and repairs any drift.
+ */
+@Service
+public class ExpenseRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseRollupService.class);
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthService authService;
+
+    public List<MonthlyRollup> rebuildCurrentUser() throws ExecutionException, InterruptedException {
+        String currentUserId = authService.getCurrentUserId();
+        if (currentUserId == null) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return rebuild(currentUserId);
+    }
+
+    /**
+     * Recomputes a user's rollups from a streaming read of their expenses, so memory stays
+     * flat however many expenses the user has.
+     */
+    public List<MonthlyRollup> rebuild(String userId) throws ExecutionException, InterruptedException {
+        // Read before the expenses, so that months written since can be told apart
+        long version = expenseRepository.findVersionByUserId(userId);
+        List<MonthlyRollup> rollups;
+        try (Stream<Expense> expenses = expenseRepository.streamSummariesByUserId(userId)) {
+            rollups = computeRollups(expenses);
+        }
+        expenseRepository.replaceRollupsAsync(userId, rollups, version).get();
+        return rollups;
+    }
+
+    /**
+     * Pass over every user, reading users a page at a time. Off by default: set
+     * app.rollups.rebuild-cron on one instance only, as every instance would run it.
+     */
+    @Scheduled(cron = "${app.rollups.rebuild-cron:-}")
+    public void rebuildAll() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int rebuilt = 0;
+        try (Stream<User> users = userRepository.streamAll()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                String userId = iterator.next().getId();
+                try {
+                    rebuild(userId);
+                    rebuilt++;
+                } catch (ExecutionException | RuntimeException e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    logger.error("Failed to rebuild rollups for user {}: {}", userId, cause.getMessage());
+                }
+            }
+        }
+        logger.info("Rebuilt rollups for {} users in {} ms", rebuilt, System.currentTimeMillis() - start);
+    }
+
+    static List<MonthlyRollup> computeRollups(Stream<Expense> expenses) {
+        return MonthlyRollup.summarize(expenses);
+    }
+}
@@ -1,183 +1,319 @@
 package org.example.service;
 
+import org.example.dto.ExpensePageResponse;
+import org.example.dto.ExpensePatchRequest;
 import org.example.dto.ExpenseRequest;
 import org.example.dto.ExpenseResponse;
 import org.example.dto.StatisticsResponse;
+import org.example.dto.Versioned;
 import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
 import org.example.repository.ExpenseRepository;
+import org.example.repository.ExpenseTotals;
+import org.example.util.ETags;
+import org.example.util.ExpensePageToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+/**
+ * Expense operations are non-blocking: each returns a CompletableFuture that completes
+ * when the underlying Firestore calls do. The current user is resolved up front on the
+ * calling thread because the security context is not visible to completion callbacks.
+ */
 @Service
 public class ExpenseService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_BATCH_GET_IDS = 100;
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
     @Autowired
     private ExpenseRepository expenseRepository;
 
     @Autowired
     private AuthService authService;
 
-    public ExpenseResponse createExpense(ExpenseRequest request) throws ExecutionException, InterruptedException {
-        String currentUserId = authService.getCurrentUserId();
-        if (currentUserId == null) {
-            throw new RuntimeException("User not authenticated");
-        }
+    public CompletableFuture<ExpenseResponse> createExpense(ExpenseRequest request) {
+        String currentUserId = requireCurrentUserId();
+        Expense expense = newExpense(request, currentUserId);
 
-        Expense expense = new Expense();
-        expense.setTitle(request.getTitle());
-        expense.setDescription(request.getDescription());
-        expense.setAmount(request.getAmount());
-        expense.setCategory(request.getCategory());
-        expense.setDate(request.getDate() != null ? request.getDate() : LocalDateTime.now());
-        expense.setUserId(currentUserId); // Set current user ID
+        // The written expense carries its server timestamps, so no read-back is needed
+        return expenseRepository.createAsync(expense)
+                .thenApply(ExpenseService::toResponse);
+    }
 
-        String id = expenseRepository.save(expense);
-        return convertToResponse(expenseRepository.findById(id));
+    // expectedVersion is the If-Match version, or null for an unconditional write
+
+    public CompletableFuture<ExpenseResponse> updateExpense(String id, ExpenseRequest request, String expectedVersion) {
+        String currentUserId = requireCurrentUserId();
+
+        return expenseRepository.updateAsync(id, expectedVersion, expense -> {
+                    checkOwnership(id, expense, currentUserId);
+
+                    expense.setTitle(request.getTitle());
+                    expense.setDescription(request.getDescription());
+                    expense.setAmount(request.getAmount());
+                    expense.setCategory(request.getCategory());
+                    if (request.getDate() != null) {
+                        expense.setDate(request.getDate());
+                    }
+                })
+                .thenApply(ExpenseService::toResponse);
     }
 
-    public ExpenseResponse updateExpense(String id, ExpenseRequest request) throws ExecutionException, InterruptedException {
-        String currentUserId = authService.getCurrentUserId();
-        if (currentUserId == null) {
-            throw new RuntimeException("User not authenticated");
+    /**
+     * Changes only the fields present in the request; everything else is left as stored.
+     */
+    public CompletableFuture<ExpenseResponse> patchExpense(String id, ExpensePatchRequest request,
+                                                           String expectedVersion) {
+        String currentUserId = requireCurrentUserId();
+
+        Expense changes = new Expense();
+        changes.setTitle(request.getTitle());
+        changes.setDescription(request.getDescription());
+        changes.setAmount(request.getAmount());
+        changes.setCategory(request.getCategory());
+        changes.setDate(request.getDate());
+        if (changes.equals(new Expense())) {
+            throw new RuntimeException("No fields to update");
         }
 
-        Expense expense = expenseRepository.findById(id);
-        if (expense == null) {
-            throw new RuntimeException("Expense not found with id: " + id);
-        }
+        return expenseRepository.patchAsync(id, expectedVersion, changes,
+                        expense -> checkOwnership(id, expense, currentUserId))
+                .thenApply(ExpenseService::toResponse);
+    }
 
-        // Check if expense belongs to current user
-        if (!currentUserId.equals(expense.getUserId())) {
-            throw new RuntimeException("Access denied: This expense does not belong to you");
-        }
+    public CompletableFuture<ExpenseResponse> getExpenseById(String id) {
+        String currentUserId = requireCurrentUserId();
 
-        expense.setTitle(request.getTitle());
-        expense.setDescription(request.getDescription());
-        expense.setAmount(request.getAmount());
-        expense.setCategory(request.getCategory());
-        if (request.getDate() != null) {
-            expense.setDate(request.getDate());
+        return expenseRepository.findByIdAsync(id)
+                .thenApply(expense -> {
+                    checkOwnership(id, expense, currentUserId);
+                    return toResponse(expense);
+                });
+    }
+
+    /**
+     * Resolves many ids in one read. Results follow the order of the ids; ids that do not
+     * exist or belong to another user are left out rather than failing the whole batch.
+     */
+    public CompletableFuture<List<ExpenseResponse>> getExpensesByIds(List<String> ids) {
+        String currentUserId = requireCurrentUserId();
+
+        List<String> distinctIds = ids.stream()
+                .filter(id -> id != null && !id.isBlank())
+                .distinct()
+                .toList();
+        if (distinctIds.size() > MAX_BATCH_GET_IDS) {
+            throw new RuntimeException("At most " + MAX_BATCH_GET_IDS + " ids can be requested at once");
         }
 
-        expenseRepository.save(expense);
-        return convertToResponse(expense);
+        return expenseRepository.findAllByIdAsync(distinctIds)
+                .thenApply(expenses -> toResponses(expenses.stream()
+                        .filter(expense -> currentUserId.equals(expense.getUserId()))
+                        .toList()));
     }
 
-    public ExpenseResponse getExpenseById(String id) throws ExecutionException, InterruptedException {
-        String currentUserId = authService.getCurrentUserId();
-        if (currentUserId == null) {
-            throw new RuntimeException("User not authenticated");
-        }
+    public CompletableFuture<List<ExpenseResponse>> getAllExpenses() {
+        return findAllExpenses(requireCurrentUserId());
+    }
 
-        Expense expense = expenseRepository.findById(id);
-        if (expense == null) {
-            throw new RuntimeException("Expense not found with id: " + id);
-        }
+    // Conditional variants for polling clients: when ifNoneMatch still names the current
+    // version of the user's expenses, nothing is queried and the result has no body
 
-        // Check if expense belongs to current user
-        if (!currentUserId.equals(expense.getUserId())) {
-            throw new RuntimeException("Access denied: This expense does not belong to you");
-        }
+    public CompletableFuture<Versioned<List<ExpenseResponse>>> getAllExpenses(String ifNoneMatch) {
+        String currentUserId = requireCurrentUserId();
 
-        return convertToResponse(expense);
+        return ETags.ifChanged(expenseRepository.findVersionByUserIdAsync(currentUserId),
+                "expenses." + currentUserId, ifNoneMatch, () -> findAllExpenses(currentUserId));
     }
 
-    public List<ExpenseResponse> getAllExpenses() throws ExecutionException, InterruptedException {
-        String currentUserId = authService.getCurrentUserId();
-        if (currentUserId == null) {
-            throw new RuntimeException("User not authenticated");
-        }
+    public CompletableFuture<Versioned<StatisticsResponse>> getStatistics(String ifNoneMatch) {
+        String currentUserId = requireCurrentUserId();
 
-        List<Expense> expenses = expenseRepository.findByUserId(currentUserId);
-        return expenses.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return ETags.ifChanged(expenseRepository.findVersionByUserIdAsync(currentUserId),
+                "statistics." + currentUserId, ifNoneMatch, () -> statistics(currentUserId));
     }
 
-    public List<ExpenseResponse> getExpensesByCategory(String category) throws ExecutionException, InterruptedException {
-        List<Expense> expenses = expenseRepository.findByCategory(category);
-        return expenses.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    public CompletableFuture<ExpensePageResponse> getExpensesPage(String pageToken, Integer size) {
+        String currentUserId = requireCurrentUserId();
+
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        ExpensePageToken after = pageToken == null || pageToken.isBlank() ? null : ExpensePageToken.decode(pageToken);
+
+        // Fetch one extra row to learn whether another page exists without a count query
+        return expenseRepository.findPageByUserIdAsync(currentUserId,
+                        after != null ? after.getDate() : null,
+                        after != null ? after.getId() : null,
+                        pageSize + 1)
+                .thenApply(expenses -> {
+                    boolean hasMore = expenses.size() > pageSize;
+                    List<Expense> page = hasMore ? expenses.subList(0, pageSize) : expenses;
+                    String nextPageToken = hasMore ? ExpensePageToken.of(page.get(page.size() - 1)).encode() : null;
+
+                    List<ExpenseResponse> responses = toResponses(page);
+                    return new ExpensePageResponse(responses, nextPageToken, responses.size(), hasMore);
+                });
     }
 
-    public List<ExpenseResponse> getExpensesByDateRange(LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        List<Expense> expenses = expenseRepository.findByDateRange(startDate, endDate);
-        return expenses.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    public CompletableFuture<List<ExpenseResponse>> getExpensesByCategory(String category) {
+        return expenseRepository.findByCategoryAsync(category)
+                .thenApply(ExpenseService::toResponses);
     }
 
-    public void deleteExpense(String id) throws ExecutionException, InterruptedException {
-        if (!expenseRepository.existsById(id)) {
-            throw new RuntimeException("Expense not found with id: " + id);
-        }
-        expenseRepository.deleteById(id);
+    public CompletableFuture<List<ExpenseResponse>> getExpensesByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        String currentUserId = requireCurrentUserId();
+
+        return expenseRepository.findByUserIdAndDateRangeAsync(currentUserId, startDate, endDate)
+                .thenApply(ExpenseService::toResponses);
     }
 
-    public StatisticsResponse getStatistics() throws ExecutionException, InterruptedException {
-        List<Expense> expenses = expenseRepository.findAll();
-        
-        if (expenses.isEmpty()) {
-            return new StatisticsResponse(0.0, 0L, Map.of(), Map.of(), 0.0);
-        }
+    public CompletableFuture<Void> deleteExpense(String id, String expectedVersion) {
+        String currentUserId = requireCurrentUserId();
 
-        double totalAmount = expenses.stream().mapToDouble(Expense::getAmount).sum();
-        long totalExpenses = expenses.size();
-        double averageExpense = totalAmount / totalExpenses;
+        return expenseRepository.deleteAsync(id, expectedVersion,
+                expense -> checkOwnership(id, expense, currentUserId));
+    }
 
-        Map<String, Double> expensesByCategory = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        Expense::getCategory,
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    /**
+     * Overall statistics are read from the user's monthly rollups, one small document per
+     * month. Users whose rollups have not been built yet fall back to aggregation queries.
+     */
+    public CompletableFuture<StatisticsResponse> getStatistics() {
+        return statistics(requireCurrentUserId());
+    }
 
-        Map<String, Double> expensesByMonth = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        expense -> YearMonth.from(expense.getDate()).format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    private CompletableFuture<StatisticsResponse> statistics(String currentUserId) {
+        return expenseRepository.findRollupsByUserIdAsync(currentUserId)
+                .thenCompose(rollups -> rollups == null
+                        ? buildStatistics(currentUserId, null, null)
+                        : CompletableFuture.completedFuture(statisticsFromRollups(rollups)));
+    }
 
-        return new StatisticsResponse(totalAmount, totalExpenses, expensesByCategory, expensesByMonth, averageExpense);
+    public CompletableFuture<StatisticsResponse> getStatisticsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return buildStatistics(requireCurrentUserId(), startDate, endDate);
     }
 
-    public StatisticsResponse getStatisticsByDateRange(LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        List<Expense> expenses = expenseRepository.findByDateRange(startDate, endDate);
-        
-        if (expenses.isEmpty()) {
+    /**
+     * Count, sum and average come from a server-side aggregation query; only the per-category
+     * and per-month breakdowns read documents, projected down to the three fields they need.
+     * Both are read from one snapshot, so the totals and the breakdowns agree.
+     */
+    private CompletableFuture<StatisticsResponse> buildStatistics(String userId, LocalDateTime startDate,
+                                                                  LocalDateTime endDate) {
+        return expenseRepository.aggregateWithSummariesByUserIdAsync(userId, startDate, endDate)
+                .thenApply(summaries -> calculateStatistics(summaries.getTotals(), summaries.getExpenses()));
+    }
+
+    /**
+     * The totals count every expense in scope. Expenses without an amount add nothing to any
+     * sum. Legacy expenses without a date, which only an unbounded query can return, belong
+     * to no month: they count towards the totals and their category, but not to any month, so
+     * the months can then sum to less than the total.
+     */
+    static StatisticsResponse calculateStatistics(ExpenseTotals totals, List<Expense> expenses) {
+        if (totals.getCount() == 0) {
+            return new StatisticsResponse(0.0, 0L, Map.of(), Map.of(), 0.0);
+        }
+
+        Map<String, Double> expensesByCategory = new HashMap<>();
+        Map<String, Double> expensesByMonth = new HashMap<>();
+
+        for (Expense expense : expenses) {
+            if (expense.getAmount() == null) {
+                continue;
+            }
+            double amount = expense.getAmount();
+            expensesByCategory.merge(MonthlyRollup.categoryOf(expense), amount, Double::sum);
+            if (expense.getDate() != null) {
+                expensesByMonth.merge(YearMonth.from(expense.getDate()).format(MONTH_FORMAT), amount, Double::sum);
+            }
+        }
+
+        return new StatisticsResponse(totals.getSum(), totals.getCount(), expensesByCategory, expensesByMonth,
+                totals.getAverage());
+    }
+
+    static StatisticsResponse statisticsFromRollups(List<MonthlyRollup> rollups) {
+        double totalAmount = 0.0;
+        long totalExpenses = 0L;
+        Map<String, Double> expensesByCategory = new HashMap<>();
+        Map<String, Double> expensesByMonth = new HashMap<>();
+
+        for (MonthlyRollup rollup : rollups) {
+            if (rollup.getCount() <= 0) {
+                continue;
+            }
+            totalAmount += rollup.getTotal();
+            totalExpenses += rollup.getCount();
+            expensesByMonth.put(rollup.getMonth(), rollup.getTotal());
+            rollup.getCategories().forEach((category, amount) -> {
+                if (amount != 0.0) {
+                    expensesByCategory.merge(category, amount, Double::sum);
+                }
+            });
+        }
+
+        if (totalExpenses == 0) {
             return new StatisticsResponse(0.0, 0L, Map.of(), Map.of(), 0.0);
         }
+        return new StatisticsResponse(totalAmount, totalExpenses, expensesByCategory, expensesByMonth,
+                totalAmount / totalExpenses);
+    }
 
-        double totalAmount = expenses.stream().mapToDouble(Expense::getAmount).sum();
-        long totalExpenses = expenses.size();
-        double averageExpense = totalAmount / totalExpenses;
+    static Expense newExpense(ExpenseRequest request, String userId) {
+        Expense expense = new Expense();
+        expense.setTitle(request.getTitle());
+        expense.setDescription(request.getDescription());
+        expense.setAmount(request.getAmount());
+        expense.setCategory(request.getCategory());
+        expense.setDate(request.getDate() != null ? request.getDate() : LocalDateTime.now());
+        expense.setUserId(userId); // Set current user ID
+        return expense;
+    }
 
-        Map<String, Double> expensesByCategory = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        Expense::getCategory,
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    private CompletableFuture<List<ExpenseResponse>> findAllExpenses(String userId) {
+        return expenseRepository.findByUserIdAsync(userId)
+                .thenApply(ExpenseService::toResponses);
+    }
 
-        Map<String, Double> expensesByMonth = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        expense -> YearMonth.from(expense.getDate()).format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                        Collectors.summingDouble(Expense::getAmount)
-                ));
+    private String requireCurrentUserId() {
+        String currentUserId = authService.getCurrentUserId();
+        if (currentUserId == null) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return currentUserId;
+    }
 
-        return new StatisticsResponse(totalAmount, totalExpenses, expensesByCategory, expensesByMonth, averageExpense);
+    private void checkOwnership(String id, Expense expense, String currentUserId) {
+        if (expense == null) {
+            throw new RuntimeException("Expense not found with id: " + id);
+        }
+
+        // Check if expense belongs to current user
+        if (!currentUserId.equals(expense.getUserId())) {
+            throw new RuntimeException("Access denied: This expense does not belong to you");
+        }
+    }
+
+    static List<ExpenseResponse> toResponses(List<Expense> expenses) {
+        return expenses.stream()
+                .map(ExpenseService::toResponse)
+                .collect(Collectors.toList());
     }
 
-    private ExpenseResponse convertToResponse(Expense expense) {
+    static ExpenseResponse toResponse(Expense expense) {
         return new ExpenseResponse(
                 expense.getId(),
                 expense.getTitle(),
@@ -187,7 +323,8 @@ public class ExpenseService {
                 expense.getDate(),
                 expense.getUserId(),
                 expense.getCreatedAt(),
-                expense.getUpdatedAt()
+                expense.getUpdatedAt(),
+                expense.getVersion()
         );
     }
-}
\ No newline at end of file
+}
@@ -1,94 +1,279 @@
 package org.example.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.io.CountingOutputStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.example.dto.ExpenseResponse;
+import org.example.model.Expense;
+import org.example.repository.ExpenseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.StringWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
+/**
+ * Exports are streamed: rows are read through a streaming query and written to the response
+ * as they arrive, so memory use does not grow with the size of the export.
+ */
 @Service
 public class ExportService {
 
+    private static final int EXPORT_CHUNK_SIZE = 500;
+    private static final DateTimeFormatter CSV_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
-    private ExpenseService expenseService;
-
-    public String exportToJson() throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> expenses = expenseService.getAllExpenses();
-        
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(expenses);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to export to JSON", e);
+    private MeterRegistry meterRegistry;
+
+    // ObjectWriters are immutable and thread-safe; build them once from the shared mapper
+    private ObjectWriter jsonWriter;
+    private ObjectWriter prettyJsonWriter;
+    private ObjectWriter ndjsonWriter;
+
+    // Registered once per format rather than looked up on every export
+    private ExportMeters jsonMeters;
+    private ExportMeters ndjsonMeters;
+    private ExportMeters csvMeters;
+
+    @PostConstruct
+    void initWriters() {
+        jsonWriter = objectMapper.writerFor(ExpenseResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        prettyJsonWriter = jsonWriter.withDefaultPrettyPrinter();
+        ndjsonWriter = jsonWriter.withRootValueSeparator("\n");
+    }
+
+    @PostConstruct
+    void initMeters() {
+        jsonMeters = new ExportMeters("json");
+        ndjsonMeters = new ExportMeters("ndjson");
+        csvMeters = new ExportMeters("csv");
+    }
+
+    public StreamingResponseBody exportToJson(boolean pretty) {
+        String currentUserId = requireCurrentUserId();
+        return measured(jsonMeters, (outputStream, source) -> writeJsonArray(outputStream, pretty, source),
+                consumer -> forEachExpensePage(currentUserId, consumer));
+    }
+
+    public StreamingResponseBody exportToJsonByDateRange(LocalDateTime startDate, LocalDateTime endDate, boolean pretty) {
+        String currentUserId = requireCurrentUserId();
+        return measured(jsonMeters, (outputStream, source) -> writeJsonArray(outputStream, pretty, source),
+                consumer -> forEachExpenseInRange(currentUserId, startDate, endDate, consumer));
+    }
+
+    public StreamingResponseBody exportToNdjson() {
+        String currentUserId = requireCurrentUserId();
+        return measured(ndjsonMeters, this::writeNdjson, consumer -> forEachExpensePage(currentUserId, consumer));
+    }
+
+    public StreamingResponseBody exportToNdjsonByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        String currentUserId = requireCurrentUserId();
+        return measured(ndjsonMeters, this::writeNdjson,
+                consumer -> forEachExpenseInRange(currentUserId, startDate, endDate, consumer));
+    }
+
+    public StreamingResponseBody exportToCsv() {
+        String currentUserId = requireCurrentUserId();
+        return measured(csvMeters, this::writeCsv, consumer -> forEachExpensePage(currentUserId, consumer));
+    }
+
+    public StreamingResponseBody exportToCsvByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        String currentUserId = requireCurrentUserId();
+        return measured(csvMeters, this::writeCsv,
+                consumer -> forEachExpenseInRange(currentUserId, startDate, endDate, consumer));
+    }
+
+    /**
+     * Writes the export and records its size in rows and bytes, also when the client goes away
+     * halfway.
+     */
+    private StreamingResponseBody measured(ExportMeters meters, ExportWriter writer, ExpenseSource source) {
+        return outputStream -> {
+            CountingOutputStream counted = new CountingOutputStream(outputStream);
+            LongAdder rows = new LongAdder();
+            try {
+                writer.write(counted, consumer -> source.forEachPage(page -> {
+                    rows.add(page.size());
+                    consumer.accept(page);
+                }));
+            } finally {
+                meters.rows.record(rows.sum());
+                meters.size.record(counted.getCount());
+            }
+        };
+    }
+
+    void writeJsonArray(OutputStream outputStream, boolean pretty, ExpenseSource source) throws IOException {
+        ObjectWriter writer = pretty ? prettyJsonWriter : jsonWriter;
+        try (JsonGenerator generator = createGenerator(outputStream);
+             SequenceWriter sequence = writer.writeValuesAsArray(generator)) {
+            source.forEachPage(page -> {
+                sequence.writeAll(page);
+                sequence.flush();
+            });
         }
     }
 
-    public String exportToJsonByDateRange(LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> expenses = expenseService.getExpensesByDateRange(startDate, endDate);
-        
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(expenses);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to export to JSON", e);
+    void writeNdjson(OutputStream outputStream, ExpenseSource source) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream);
+             SequenceWriter sequence = ndjsonWriter.writeValues(generator)) {
+            source.forEachPage(page -> {
+                sequence.writeAll(page);
+                sequence.flush();
+            });
+            // The separator only goes between rows; terminate the last line too
+            if (generator.getOutputContext().getEntryCount() > 0) {
+                generator.writeRaw('\n');
+            }
         }
     }
 
-    public String exportToCsv() throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> expenses = expenseService.getAllExpenses();
-        return convertToCsv(expenses);
-    }
-
-    public String exportToCsvByDateRange(LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        List<ExpenseResponse> expenses = expenseService.getExpensesByDateRange(startDate, endDate);
-        return convertToCsv(expenses);
-    }
-
-    private String convertToCsv(List<ExpenseResponse> expenses) {
-        StringWriter stringWriter = new StringWriter();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        
-        // CSV Header
-        stringWriter.append("ID,Title,Description,Amount,Category,Date,User ID,Created At,Updated At\n");
-        
-        // CSV Data
-        for (ExpenseResponse expense : expenses) {
-            stringWriter.append(escapeCsvValue(expense.getId())).append(",");
-            stringWriter.append(escapeCsvValue(expense.getTitle())).append(",");
-            stringWriter.append(escapeCsvValue(expense.getDescription())).append(",");
-            stringWriter.append(String.valueOf(expense.getAmount())).append(",");
-            stringWriter.append(escapeCsvValue(expense.getCategory())).append(",");
-            stringWriter.append(expense.getDate() != null ? expense.getDate().format(formatter) : "").append(",");
-            stringWriter.append(escapeCsvValue(expense.getUserId())).append(",");
-            stringWriter.append(expense.getCreatedAt() != null ? expense.getCreatedAt().format(formatter) : "").append(",");
-            stringWriter.append(expense.getUpdatedAt() != null ? expense.getUpdatedAt().format(formatter) : "");
-            stringWriter.append("\n");
+    void writeCsv(OutputStream outputStream, ExpenseSource source) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeCsvHeader(writer);
+        source.forEachPage(page -> {
+            for (ExpenseResponse expense : page) {
+                writeCsvRow(writer, expense);
+            }
+            writer.flush();
+        });
+        writer.flush();
+    }
+
+    void writeCsvHeader(Writer writer) throws IOException {
+        writer.append("ID,Title,Description,Amount,Category,Date,User ID,Created At,Updated At\n");
+    }
+
+    void writeCsvRow(Writer writer, ExpenseResponse expense) throws IOException {
+        writer.append(escapeCsvValue(expense.getId())).append(",");
+        writer.append(escapeCsvValue(expense.getTitle())).append(",");
+        writer.append(escapeCsvValue(expense.getDescription())).append(",");
+        writer.append(String.valueOf(expense.getAmount())).append(",");
+        writer.append(escapeCsvValue(expense.getCategory())).append(",");
+        writer.append(expense.getDate() != null ? expense.getDate().format(CSV_DATE_FORMAT) : "").append(",");
+        writer.append(escapeCsvValue(expense.getUserId())).append(",");
+        writer.append(expense.getCreatedAt() != null ? expense.getCreatedAt().format(CSV_DATE_FORMAT) : "").append(",");
+        writer.append(expense.getUpdatedAt() != null ? expense.getUpdatedAt().format(CSV_DATE_FORMAT) : "");
+        writer.append("\n");
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        // The servlet container owns the response stream
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    private void forEachExpensePage(String userId, PageConsumer consumer) throws IOException {
+        forEachChunk(expenseRepository.streamByUserId(userId), consumer);
+    }
+
+    private void forEachExpenseInRange(String userId, LocalDateTime startDate, LocalDateTime endDate,
+                                       PageConsumer consumer) throws IOException {
+        // Runs on the async dispatch thread, so the user is passed in rather than read from the security context
+        forEachChunk(expenseRepository.streamByUserIdAndDateRange(userId, startDate, endDate), consumer);
+    }
+
+    /**
+     * Hands streamed expenses to the consumer in chunks, so output is flushed as rows arrive
+     * rather than after the whole query has been read.
+     */
+    private void forEachChunk(Stream<Expense> expenses, PageConsumer consumer) throws IOException {
+        try (expenses) {
+            Iterator<Expense> iterator = expenses.iterator();
+            List<ExpenseResponse> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(ExpenseService.toResponse(iterator.next()));
+                if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        }
+    }
+
+    private String requireCurrentUserId() {
+        String currentUserId = authService.getCurrentUserId();
+        if (currentUserId == null) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return currentUserId;
+    }
+
+    @FunctionalInterface
+    interface PageConsumer {
+        void accept(List<ExpenseResponse> page) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface ExportWriter {
+        void write(OutputStream outputStream, ExpenseSource source) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface ExpenseSource {
+        void forEachPage(PageConsumer consumer) throws IOException;
+    }
+
+    private class ExportMeters {
+        private final DistributionSummary rows;
+        private final DistributionSummary size;
+
+        private ExportMeters(String format) {
+            rows = DistributionSummary.builder("export.rows")
+                    .description("Expenses per export")
+                    .tag("format", format)
+                    .register(meterRegistry);
+            size = DistributionSummary.builder("export.size")
+                    .description("Bytes written per export")
+                    .baseUnit("bytes")
+                    .tag("format", format)
+                    .register(meterRegistry);
         }
-        
-        return stringWriter.toString();
     }
 
     private String escapeCsvValue(String value) {
         if (value == null) {
             return "";
         }
-        
+
         // Escape quotes and wrap in quotes if necessary
         if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
             value = value.replace("\"", "\"\"");
             return "\"" + value + "\"";
         }
-        
+
         return value;
     }
-}
\ No newline at end of file
+}
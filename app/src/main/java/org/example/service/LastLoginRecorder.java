@@ -0,0 +1,123 @@
+package org.example.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for users' lastLoginAt. Logins only record a timestamp in memory;
+ * repeated logins by the same user coalesce into one entry, and the buffer is flushed
+ * periodically as field-level updates, when it reaches its bound, and on shutdown. While a
+ * flush is stuck on the repository the buffer keeps to its bound by dropping the oldest logins.
+ */
+@Component
+public class LastLoginRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginRecorder.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.users.last-login.max-pending:10000}")
+    private int maxPending;
+
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean overflowFlushQueued = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ExecutorService overflowExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "last-login-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void record(String userId) {
+        record(userId, LocalDateTime.now());
+    }
+
+    public void record(String userId, LocalDateTime loginAt) {
+        pending.merge(userId, loginAt, (current, next) -> next.isAfter(current) ? next : current);
+        if (pending.size() < maxPending) {
+            return;
+        }
+        if (overflowFlushQueued.compareAndSet(false, true)) {
+            overflowExecutor.execute(() -> {
+                overflowFlushQueued.set(false);
+                flush();
+            });
+        }
+        while (pending.size() > maxPending) {
+            dropOldest();
+        }
+    }
+
+    // A linear scan, but only reached while flushes cannot keep up
+    private void dropOldest() {
+        Map.Entry<String, LocalDateTime> oldest = null;
+        for (Map.Entry<String, LocalDateTime> entry : pending.entrySet()) {
+            if (oldest == null || entry.getValue().isBefore(oldest.getValue())) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && pending.remove(oldest.getKey(), oldest.getValue())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.last-login.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        overflowExecutor.shutdown();
+        flush();
+    }
+
+    /**
+     * Writes out everything recorded so far. Entries that fail to write are dropped; a later
+     * login records a fresh timestamp anyway.
+     */
+    public synchronized int flush() {
+        long droppedSinceLastFlush = dropped.getAndSet(0);
+        if (droppedSinceLastFlush > 0) {
+            logger.warn("Dropped {} last login times while the buffer was full", droppedSinceLastFlush);
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<String, LocalDateTime> batch = new HashMap<>();
+        for (Map.Entry<String, LocalDateTime> entry : pending.entrySet()) {
+            // Only remove what we took; a newer login recorded meanwhile stays for the next flush
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            int failed = userRepository.updateLastLoginTimes(batch);
+            if (failed > 0) {
+                logger.warn("Failed to record last login for {} of {} users", failed, batch.size());
+            }
+            return batch.size() - failed;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Failed to flush last login times for {} users: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.dto.AuthResponse;
 import org.example.model.User;
 import org.example.repository.UserRepository;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
 
@@ -20,7 +21,8 @@ import java.util.concurrent.ExecutionException;
 public class OAuth2UserService {
     
     private final UserRepository userRepository;
-    private final Firestore firestore;
+    private final ObjectProvider<Firestore> firestoreProvider; // absent with local storage
+    private final LastLoginRecorder lastLoginRecorder;
     
     public AuthResponse processOAuth2User(OAuth2User oauth2User) throws ExecutionException, InterruptedException {
         String email = oauth2User.getAttribute("email");
@@ -37,8 +39,7 @@ public class OAuth2UserService {
         if (existingUser.isPresent()) {
             // Update existing user
             User user = existingUser.get();
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
+            lastLoginRecorder.record(user.getId());
             
             return new AuthResponse(
                     null, "Bearer", user.getId(), user.getEmail(), 
@@ -76,6 +77,10 @@ public class OAuth2UserService {
     }
     
     private void saveOAuth2User(String userId, OAuth2User oauth2User, String provider) {
+        Firestore firestore = firestoreProvider.getIfAvailable();
+        if (firestore == null) {
+            return;
+        }
         try {
             org.example.model.OAuth2User oAuth2UserEntity = new org.example.model.OAuth2User();
             oAuth2UserEntity.setId(userId + "_" + provider);
@@ -0,0 +1,72 @@
+package org.example.service;
+
+import org.example.model.User;
+import org.example.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Indexes the usernames and emails of users stored before lookups were indexed. Run it once
+ * after upgrading. A run with no conflicts marks the index complete, after which lookups
+ * never query the users collection; until then they fall back to it.
+ */
+@Service
+public class UserIndexBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(UserIndexBackfillService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Pass over every user, reading users a page at a time. Off by default: set
+     * app.users.index-backfill-cron on one instance only, and unset it once a run is clean.
+     */
+    @Scheduled(cron = "${app.users.index-backfill-cron:-}")
+    public void scheduledBackfill() throws InterruptedException {
+        backfill();
+    }
+
+    /**
+     * Returns the ids of users left unindexed because another user already holds their
+     * username or email. Those are duplicates in the stored data and need fixing by hand;
+     * the index is only marked complete when there are none.
+     */
+    public List<String> backfill() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int indexed = 0;
+        List<String> conflicts = new ArrayList<>();
+        try (Stream<User> users = userRepository.streamAll()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                try {
+                    userRepository.indexAsync(user).get();
+                    indexed++;
+                } catch (ExecutionException e) {
+                    conflicts.add(user.getId());
+                    logger.warn("Could not index user {}: {}", user.getId(), e.getCause().getMessage());
+                }
+            }
+        }
+        logger.info("Indexed {} users, {} conflicts, in {} ms", indexed, conflicts.size(),
+                System.currentTimeMillis() - start);
+        if (conflicts.isEmpty()) {
+            try {
+                userRepository.markIndexCompleteAsync().get();
+            } catch (ExecutionException e) {
+                // The next run marks it; lookups keep falling back until then
+                logger.warn("Could not mark the user index complete: {}", e.getCause().getMessage());
+            }
+        }
+        return conflicts;
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.util;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.example.metrics.RequestStats;
+
+import java.util.concurrent.CompletableFuture;
+
+public class ApiFutureUtils {
+
+    /**
+     * Adapts a Firestore ApiFuture to a CompletableFuture without parking a thread.
+     * The callback runs on the thread that completes the ApiFuture, so dependent
+     * stages should stay cheap or hop to an executor. They run on behalf of the request
+     * that started the call, which is charged one round trip.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        RequestStats request = RequestStats.current();
+        long start = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                apiFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                complete(result, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete(null, t);
+            }
+
+            private void complete(T result, Throwable error) {
+                if (request != null) {
+                    request.recordRoundTrip(System.nanoTime() - start);
+                }
+                RequestStats.complete(request, future, result, error);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+}
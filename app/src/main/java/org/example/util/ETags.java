@@ -0,0 +1,75 @@
+package org.example.util;
+
+import com.google.common.hash.Hashing;
+import org.example.dto.Versioned;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET support: ETags derived from version counters, so a request whose
+ * If-None-Match is still current is answered 304 without computing the body.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * The scope names what is versioned, such as one user's expenses. It goes into the ETag
+     * hashed, so the header does not expose the user id it usually contains.
+     */
+    public static String of(String scope, long version) {
+        String scopeHash = Hashing.sha256().hashString(scope, StandardCharsets.UTF_8).toString().substring(0, 16);
+        return "\"" + scopeHash + "." + version + "\"";
+    }
+
+    /**
+     * Reads the version first and only computes the body if the client's copy is out of date.
+     * A write landing between the two makes the body newer than its ETag, which at worst
+     * costs the client one more full response.
+     */
+    public static <T> CompletableFuture<Versioned<T>> ifChanged(CompletableFuture<Long> version, String scope,
+                                                                String ifNoneMatch,
+                                                                Supplier<CompletableFuture<T>> body) {
+        return version.thenCompose(current -> {
+            String etag = of(scope, current);
+            if (matches(ifNoneMatch, etag)) {
+                return CompletableFuture.completedFuture(new Versioned<T>(etag, null));
+            }
+            return body.get().thenApply(value -> new Versioned<>(etag, value));
+        });
+    }
+
+    /**
+     * If-None-Match uses the weak comparison: W/ prefixes are ignored, and "*" matches anything.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static <T> ResponseEntity<T> toResponse(Versioned<T> versioned) {
+        if (!versioned.isModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(versioned.getEtag()).build();
+        }
+        return ResponseEntity.ok().eTag(versioned.getEtag()).body(versioned.getBody());
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.util;
+
+import org.example.model.Expense;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for expense pages. Encodes the sort key (date, id) of the
+ * last expense returned so the next page can resume with startAfter.
+ */
+public final class ExpensePageToken {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime date;
+    private final String id;
+
+    public ExpensePageToken(LocalDateTime date, String id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static ExpensePageToken of(Expense expense) {
+        return new ExpensePageToken(expense.getDate(), expense.getId());
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = (date != null ? date.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpensePageToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            // Pages are ordered by date, so the last expense of a page always has one
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            LocalDateTime date = LocalDateTime.parse(raw.substring(0, separator));
+            return new ExpensePageToken(date, raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+}
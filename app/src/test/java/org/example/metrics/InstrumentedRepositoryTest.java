@@ -0,0 +1,78 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.model.Category;
+import org.example.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InstrumentedRepositoryTest {
+
+    private SimpleMeterRegistry registry;
+    private CategoryRepository target;
+    private CategoryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        target = mock(CategoryRepository.class);
+        repository = InstrumentedRepository.instrument(target, CategoryRepository.class, "categories", registry);
+    }
+
+    @Test
+    void asyncRead_ShouldBeTimedAndCountItsDocumentsTowardsTheRequest() {
+        when(target.findAllAsync()).thenReturn(CompletableFuture.completedFuture(List.of(new Category(), new Category())));
+        RequestStats stats = new RequestStats();
+
+        RequestStats previous = RequestStats.bind(stats);
+        try {
+            assertEquals(2, repository.findAllAsync().join().size());
+        } finally {
+            RequestStats.restore(previous);
+        }
+
+        assertEquals(1, registry.get("repository.calls")
+                .tags("collection", "categories", "operation", "findAll", "outcome", "success").timer().count());
+        assertEquals(2.0, registry.get("repository.documents").tags("operation", "findAll").summary().totalAmount());
+        assertEquals(1, stats.getRepositoryCalls());
+        assertEquals(2, stats.getDocumentsRead());
+    }
+
+    @Test
+    void stagesChainedOnAFuture_ShouldRunForTheRequestThatMadeTheCall() {
+        CompletableFuture<Category> pending = new CompletableFuture<>();
+        when(target.findByIdAsync("c1")).thenReturn(pending);
+        RequestStats stats = new RequestStats();
+
+        CompletableFuture<RequestStats> seenByNextStage;
+        RequestStats previous = RequestStats.bind(stats);
+        try {
+            seenByNextStage = repository.findByIdAsync("c1").thenApply(category -> RequestStats.current());
+        } finally {
+            RequestStats.restore(previous);
+        }
+        // Completed elsewhere, as a Firestore callback thread would
+        CompletableFuture.runAsync(() -> pending.complete(new Category())).join();
+
+        assertSame(stats, seenByNextStage.join());
+        assertNull(RequestStats.current());
+    }
+
+    @Test
+    void failedCall_ShouldBeTimedAsAnErrorAndPropagate() {
+        when(target.deleteByIdAsync("c1")).thenReturn(CompletableFuture.failedFuture(new RuntimeException("gone")));
+
+        CompletableFuture<Boolean> result = repository.deleteByIdAsync("c1");
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(1, registry.get("repository.calls")
+                .tags("operation", "deleteById", "outcome", "error").timer().count());
+        assertThrows(RuntimeException.class, result::join);
+    }
+}
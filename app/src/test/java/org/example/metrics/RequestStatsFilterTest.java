@@ -0,0 +1,46 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestStatsFilterTest {
+
+    @Test
+    void response_ShouldCarryServerTimingForThePhasesAndCallsOfTheRequest() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RequestStatsFilter filter = new RequestStatsFilter(registry, true, 0, 0);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                RequestStats stats = RequestStats.current();
+                RequestStats.recordPhase("jwt", TimeUnit.MICROSECONDS.toNanos(300));
+                stats.recordRoundTrip(TimeUnit.MILLISECONDS.toNanos(4));
+                stats.recordCall("users.findById", System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(4), 1);
+                stats.recordRoundTrip(TimeUnit.MILLISECONDS.toNanos(6));
+                stats.recordCall("expenses.findByUserId", System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(6), 20);
+            }
+        });
+
+        String header = response.getHeader("Server-Timing");
+        assertNotNull(header);
+        assertTrue(header.startsWith("total;dur="), header);
+        assertTrue(header.contains("jwt;dur=0.3"), header);
+        assertTrue(header.contains("users.findById;dur=4.0;desc=\"1 call, 1 doc\""), header);
+        assertTrue(header.contains("expenses.findByUserId;dur=6.0;desc=\"1 call, 20 docs\""), header);
+        assertTrue(header.endsWith("backend;dur=10.0;desc=\"2 round trips\""), header);
+        assertEquals(21.0, registry.get("http.server.requests.documents").summary().totalAmount());
+        assertNull(RequestStats.current());
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.repository.codec;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.FieldValue;
+import org.example.model.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseCodecTest {
+
+    private final ExpenseCodec codec = ExpenseCodec.INSTANCE;
+
+    @Test
+    void encodeDecode_ShouldRoundTripAllFields() {
+        LocalDateTime date = LocalDateTime.of(2024, 1, 20, 12, 30, 15, 123_000_000);
+        Expense expense = new Expense("expense-1", "Lunch", "Team lunch", 42.5, "Food", date,
+                "user-1", date.minusDays(1), date, null);
+
+        Map<String, Object> data = codec.encode(expense);
+        Expense decoded = codec.decode("expense-1", data);
+
+        assertEquals(expense, decoded);
+        assertInstanceOf(Timestamp.class, data.get("date"));
+        assertFalse(data.containsKey("id"));
+    }
+
+    @Test
+    void encode_ShouldOmitNullFields() {
+        Expense expense = new Expense();
+        expense.setTitle("Coffee");
+
+        Map<String, Object> data = codec.encode(expense);
+
+        assertEquals(Map.of("title", "Coffee"), data);
+    }
+
+    @Test
+    void encodeUpdate_ShouldDeleteUnsetFields() {
+        Expense expense = new Expense();
+        expense.setTitle("Coffee");
+
+        Map<String, Object> data = codec.encodeUpdate(expense);
+
+        assertEquals("Coffee", data.get("title"));
+        assertEquals(FieldValue.delete(), data.get("description"));
+        assertEquals(codec.fields().size(), data.size());
+    }
+
+    @Test
+    void patch_ShouldLeaveFieldsThatAreNullInTheChangesAsStored() {
+        Expense current = new Expense();
+        current.setId("expense-1");
+        current.setTitle("Lunch");
+        current.setDescription("With the team");
+        current.setAmount(10.0);
+        current.setCategory("Food");
+        current.setUserId("user-1");
+        Expense changes = new Expense();
+        changes.setAmount(12.5);
+
+        Expense patched = codec.patch(current, changes);
+
+        assertEquals("expense-1", patched.getId());
+        assertEquals(12.5, patched.getAmount());
+        assertEquals("Lunch", patched.getTitle());
+        assertEquals("With the team", patched.getDescription());
+        assertEquals("Food", patched.getCategory());
+        assertEquals("user-1", patched.getUserId());
+        assertEquals(10.0, current.getAmount());
+    }
+
+    @Test
+    void decode_ShouldReadLegacyEncodings() {
+        Map<String, Object> legacyDate = new HashMap<>();
+        legacyDate.put("year", 2023L);
+        legacyDate.put("monthValue", 12L);
+        legacyDate.put("dayOfMonth", 31L);
+        legacyDate.put("hour", 23L);
+        legacyDate.put("minute", 59L);
+        legacyDate.put("second", 1L);
+        legacyDate.put("nano", 0L);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("amount", 10L);
+        data.put("date", legacyDate);
+        data.put("createdAt", "2023-12-30T08:00:00");
+
+        Expense decoded = codec.decode("expense-2", data);
+
+        assertEquals(10.0, decoded.getAmount());
+        assertEquals(LocalDateTime.of(2023, 12, 31, 23, 59, 1), decoded.getDate());
+        assertEquals(LocalDateTime.of(2023, 12, 30, 8, 0), decoded.getCreatedAt());
+    }
+}
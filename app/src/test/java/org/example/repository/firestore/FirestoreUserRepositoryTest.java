@@ -0,0 +1,355 @@
+package org.example.repository.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import org.example.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.Invocation;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * The uniqueness contract of the username and email index documents, against a Firestore fake
+ * that keeps documents in a map and runs transactions one at a time, as serializable
+ * transactions appear to.
+ */
+class FirestoreUserRepositoryTest {
+
+    private final Map<String, DocumentReference> refs = new ConcurrentHashMap<>();
+    private final Map<DocumentReference, Map<String, Object>> documents = new ConcurrentHashMap<>();
+    private final AtomicInteger generatedIds = new AtomicInteger();
+
+    private FirestoreUserRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Firestore firestore = mock(Firestore.class);
+        when(firestore.collection(anyString())).thenAnswer(invocation -> collection(invocation.getArgument(0)));
+        when(firestore.runTransaction(any())).thenAnswer(invocation -> runTransaction(invocation.getArgument(0)));
+        when(firestore.batch()).thenAnswer(invocation -> batch());
+
+        repository = new FirestoreUserRepository();
+        ReflectionTestUtils.setField(repository, "firestore", firestore);
+        ReflectionTestUtils.setField(repository, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(repository, "legacyLookupFallback", true);
+    }
+
+    @Test
+    void save_ShouldRejectNamesThatDifferOnlyInCase() throws Exception {
+        repository.saveAsync(user(null, "Alice", "alice@example.com")).get();
+
+        ExecutionException username = assertThrows(ExecutionException.class,
+                () -> repository.saveAsync(user(null, "ALICE", "other@example.com")).get());
+        assertEquals("Error: Username is already taken!", username.getCause().getMessage());
+
+        ExecutionException email = assertThrows(ExecutionException.class,
+                () -> repository.saveAsync(user(null, "bob", "Alice@Example.COM")).get());
+        assertEquals("Error: Email is already in use!", email.getCause().getMessage());
+    }
+
+    @Test
+    void save_ShouldReleaseTheOldIndexEntryOnRename() throws Exception {
+        User alice = user(null, "alice", "alice@example.com");
+        String aliceId = repository.saveAsync(alice).get();
+
+        alice.setUsername("alicia");
+        repository.saveAsync(alice).get();
+
+        assertFalse(documents.containsKey(ref("usernames", "alice")));
+        assertEquals(aliceId, repository.findByUsernameAsync("Alicia").get().getId());
+
+        String otherId = repository.saveAsync(user(null, "Alice", "other@example.com")).get();
+        assertEquals(otherId, repository.findByUsernameAsync("alice").get().getId());
+    }
+
+    @Test
+    void save_ShouldLetExactlyOneConcurrentClaimWin() throws Exception {
+        int contenders = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(contenders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> saves = new ArrayList<>();
+        try {
+            for (int i = 0; i < contenders; i++) {
+                User user = user(null, i % 2 == 0 ? "carol" : "Carol", "carol" + i + "@example.com");
+                saves.add(executor.submit(() -> {
+                    start.await();
+                    return repository.saveAsync(user).get();
+                }));
+            }
+            start.countDown();
+
+            List<String> winners = new ArrayList<>();
+            for (Future<String> save : saves) {
+                try {
+                    winners.add(save.get(10, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertTrue(e.getMessage().contains("Error: Username is already taken!"), e.getMessage());
+                }
+            }
+            assertEquals(1, winners.size());
+            assertEquals(winners.get(0), documents.get(ref("usernames", "carol")).get("userId"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void find_ShouldFallBackToAnUnindexedLegacyUserAndIndexIt() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("dave", "dave@example.com"));
+
+        assertEquals("legacy-1", repository.findByUsernameAsync("dave").get().getId());
+
+        assertEquals("legacy-1", documents.get(ref("usernames", "dave")).get("userId"));
+        assertEquals("legacy-1", documents.get(ref("emails", FirestoreUserRepository.indexKey("dave@example.com"))).get("userId"));
+        ExecutionException taken = assertThrows(ExecutionException.class,
+                () -> repository.saveAsync(user(null, "Dave", "new@example.com")).get());
+        assertEquals("Error: Username is already taken!", taken.getCause().getMessage());
+    }
+
+    @Test
+    void find_ShouldLeaveALegacyDuplicateUnindexed() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("erin", "shared@example.com"));
+        documents.put(ref("users", "legacy-2"), legacyUser("frank", "shared@example.com"));
+        repository.findByUsernameAsync("erin").get();
+
+        // Its email is already claimed by legacy-1, so neither of its index documents is written
+        assertEquals("legacy-2", repository.findByUsernameAsync("frank").get().getId());
+
+        assertFalse(documents.containsKey(ref("usernames", "frank")));
+        assertEquals("legacy-1", documents.get(ref("emails", FirestoreUserRepository.indexKey("shared@example.com"))).get("userId"));
+    }
+
+    @Test
+    void save_ShouldRejectACaseOnlyDuplicateOfALegacyUser() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("Alice", "alice@example.com"));
+
+        ExecutionException taken = assertThrows(ExecutionException.class,
+                () -> repository.saveAsync(user(null, "alice", "new@example.com")).get());
+        assertEquals("Error: Username is already taken!", taken.getCause().getMessage());
+
+        // The legacy user was indexed by the check, under the lowercased key
+        assertEquals("legacy-1", repository.findByUsernameAsync("ALICE").get().getId());
+        assertEquals("legacy-1", documents.get(ref("usernames", "alice")).get("userId"));
+    }
+
+    @Test
+    void find_ShouldStopFallingBackOnceTheIndexIsMarkedComplete() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("judy", "judy@example.com"));
+        documents.put(ref("users", "legacy-2"), legacyUser("ken", "ken@example.com"));
+        assertEquals("legacy-1", repository.findByUsernameAsync("judy").get().getId());
+
+        repository.markIndexCompleteAsync().get();
+
+        assertTrue(documents.containsKey(ref("migrations", "user-index")));
+        assertNull(repository.findByUsernameAsync("ken").get());
+        assertEquals("legacy-1", repository.findByEmailAsync("judy@example.com").get().getId());
+    }
+
+    @Test
+    void find_ShouldHonourAMarkerWrittenByAnotherInstance() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("liam", "liam@example.com"));
+        documents.put(ref("migrations", "user-index"), new HashMap<>(Map.of("completedAt", Timestamp.now())));
+
+        assertNull(repository.findByUsernameAsync("liam").get());
+        assertFalse(documents.containsKey(ref("usernames", "liam")));
+    }
+
+    @Test
+    void index_ShouldClaimMissingEntriesAndChangeNothingOnConflict() throws Exception {
+        documents.put(ref("users", "legacy-1"), legacyUser("heidi", "heidi@example.com"));
+        documents.put(ref("users", "legacy-2"), legacyUser("ivan", "Heidi@Example.com"));
+        User heidi = repository.findByIdAsync("legacy-1").get();
+        User ivan = repository.findByIdAsync("legacy-2").get();
+
+        repository.indexAsync(heidi).get();
+        ExecutionException conflict = assertThrows(ExecutionException.class, () -> repository.indexAsync(ivan).get());
+
+        assertEquals("Error: Email is already in use!", conflict.getCause().getMessage());
+        assertEquals("legacy-1", documents.get(ref("usernames", "heidi")).get("userId"));
+        assertFalse(documents.containsKey(ref("usernames", "ivan")));
+        // Indexing again is a no-op for a user that already holds its entries
+        repository.indexAsync(heidi).get();
+    }
+
+    @Test
+    void indexKey_ShouldEscapeIdsFirestoreReserves() {
+        assertEquals("%2E", FirestoreUserRepository.indexKey("."));
+        assertEquals("%2E%2E", FirestoreUserRepository.indexKey(".."));
+        assertEquals("%5F%5Fadmin%5F%5F", FirestoreUserRepository.indexKey("__Admin__"));
+        assertEquals("a.b_c", FirestoreUserRepository.indexKey("A.b_c"));
+        assertNotEquals(FirestoreUserRepository.indexKey("%2E"), FirestoreUserRepository.indexKey("."));
+    }
+
+    @Test
+    void save_ShouldKeepTheStoredLastLoginAt() throws Exception {
+        User user = user(null, "grace", "grace@example.com");
+        String id = repository.saveAsync(user).get();
+        // As flushed by LastLoginRecorder after this copy was read
+        Timestamp loginAt = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0);
+        documents.get(ref("users", id)).put("lastLoginAt", loginAt);
+
+        user.setFirstName("Grace");
+        user.setLastLoginAt(LocalDateTime.of(2020, 1, 1, 0, 0));
+        repository.saveAsync(user).get();
+
+        Map<String, Object> stored = documents.get(ref("users", id));
+        assertEquals(loginAt, stored.get("lastLoginAt"));
+        assertEquals("Grace", stored.get("firstName"));
+    }
+
+    private static User user(String id, String username, String email) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setEnabled(true);
+        return user;
+    }
+
+    private static Map<String, Object> legacyUser(String username, String email) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("username", username);
+        data.put("email", email);
+        data.put("enabled", true);
+        return data;
+    }
+
+    private CollectionReference collection(String name) {
+        CollectionReference collection = mock(CollectionReference.class);
+        when(collection.document()).thenAnswer(invocation -> ref(name, "generated-" + generatedIds.incrementAndGet()));
+        when(collection.document(anyString())).thenAnswer(invocation -> ref(name, invocation.getArgument(0)));
+        when(collection.whereIn(anyString(), anyList())).thenAnswer(invocation ->
+                whereIn(name, invocation.getArgument(0), invocation.getArgument(1)));
+        return collection;
+    }
+
+    private DocumentReference ref(String collection, String id) {
+        return refs.computeIfAbsent(collection + "/" + id, path -> {
+            DocumentReference ref = mock(DocumentReference.class);
+            when(ref.getId()).thenReturn(id);
+            when(ref.get()).thenAnswer(invocation -> ApiFutures.immediateFuture(snapshot(ref)));
+            when(ref.set(anyMap())).thenAnswer(invocation -> {
+                documents.put(ref, new HashMap<>(invocation.<Map<String, Object>>getArgument(0)));
+                return ApiFutures.immediateFuture(null);
+            });
+            return ref;
+        });
+    }
+
+    private DocumentSnapshot snapshot(DocumentReference ref) {
+        String id = ref.getId();
+        Map<String, Object> data = documents.get(ref);
+        DocumentSnapshot snapshot = mock(QueryDocumentSnapshot.class);
+        when(snapshot.getId()).thenReturn(id);
+        when(snapshot.exists()).thenReturn(data != null);
+        when(snapshot.getData()).thenReturn(data != null ? new HashMap<>(data) : null);
+        when(snapshot.get(anyString())).thenAnswer(invocation -> data != null ? data.get(invocation.getArgument(0)) : null);
+        return snapshot;
+    }
+
+    private Query whereIn(String collection, String field, List<?> values) {
+        Query query = mock(Query.class, RETURNS_SELF);
+        when(query.get()).thenAnswer(invocation -> {
+            List<QueryDocumentSnapshot> matches = new ArrayList<>();
+            refs.forEach((path, ref) -> {
+                Map<String, Object> data = documents.get(ref);
+                if (path.startsWith(collection + "/") && data != null && values.contains(data.get(field))) {
+                    matches.add((QueryDocumentSnapshot) snapshot(ref));
+                }
+            });
+            matches.sort((a, b) -> a.getId().compareTo(b.getId()));
+            QuerySnapshot snapshot = mock(QuerySnapshot.class);
+            when(snapshot.getDocuments()).thenReturn(matches);
+            return ApiFutures.immediateFuture(snapshot);
+        });
+        return query;
+    }
+
+    // Reads see committed documents; writes are buffered and applied only if the callback succeeds
+    private synchronized <T> ApiFuture<T> runTransaction(Transaction.Function<T> function) {
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.get(any(DocumentReference.class)))
+                .thenAnswer(invocation -> ApiFutures.immediateFuture(snapshot(invocation.getArgument(0))));
+        when(transaction.getAll(any(DocumentReference[].class))).thenAnswer(invocation -> {
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            for (Object ref : invocation.getArguments()) {
+                snapshots.add(snapshot((DocumentReference) ref));
+            }
+            return ApiFutures.immediateFuture(snapshots);
+        });
+        try {
+            T result = function.updateCallback(transaction);
+            apply(mockingDetails(transaction).getInvocations(), false);
+            return ApiFutures.immediateFuture(result);
+        } catch (Exception e) {
+            return ApiFutures.immediateFailedFuture(e);
+        }
+    }
+
+    private WriteBatch batch() {
+        WriteBatch batch = mock(WriteBatch.class);
+        when(batch.commit()).thenAnswer(invocation -> {
+            synchronized (this) {
+                try {
+                    apply(mockingDetails(batch).getInvocations(), true);
+                    return ApiFutures.immediateFuture(List.of());
+                } catch (IllegalStateException e) {
+                    return ApiFutures.immediateFailedFuture(e);
+                }
+            }
+        });
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Iterable<Invocation> invocations, boolean checkCreates) {
+        List<Invocation> writes = new ArrayList<>();
+        for (Invocation invocation : invocations) {
+            String method = invocation.getMethod().getName();
+            if (method.equals("create") && documents.containsKey((DocumentReference) invocation.getArgument(0))) {
+                if (checkCreates) {
+                    throw new IllegalStateException("ALREADY_EXISTS");
+                }
+            }
+            if (method.equals("create") || method.equals("set") || method.equals("update") || method.equals("delete")) {
+                writes.add(invocation);
+            }
+        }
+        for (Invocation write : writes) {
+            DocumentReference ref = write.getArgument(0);
+            switch (write.getMethod().getName()) {
+                case "create", "set" -> documents.put(ref, new HashMap<>((Map<String, Object>) write.getArgument(1)));
+                case "update" -> {
+                    Map<String, Object> data = documents.get(ref);
+                    ((Map<String, Object>) write.getArgument(1)).forEach((field, value) -> {
+                        if (FieldValue.delete().equals(value)) {
+                            data.remove(field);
+                        } else {
+                            data.put(field, value);
+                        }
+                    });
+                }
+                default -> documents.remove(ref);
+            }
+        }
+    }
+}
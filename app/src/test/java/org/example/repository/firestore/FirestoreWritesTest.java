@@ -0,0 +1,33 @@
+package org.example.repository.firestore;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import com.google.cloud.firestore.FirestoreException;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FirestoreWritesTest {
+
+    @Test
+    void isNotFound_ShouldLookThroughFutureWrappers() {
+        Throwable notFound = FirestoreException.forServerRejection(Status.NOT_FOUND, "No document to update");
+
+        assertTrue(FirestoreWrites.isNotFound(new CompletionException(new ExecutionException(notFound))));
+        assertFalse(FirestoreWrites.isConflict(notFound));
+    }
+
+    @Test
+    void isConflict_ShouldMatchFailedPreconditionFromApiException() {
+        Throwable conflict = ApiExceptionFactory.createException(
+                "stale update time", null, GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false);
+
+        assertTrue(FirestoreWrites.isConflict(new CompletionException(conflict)));
+        assertFalse(FirestoreWrites.isNotFound(conflict));
+        assertSame(conflict, FirestoreWrites.unwrap(new CompletionException(conflict)));
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.repository.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class QueryStreamsTest {
+
+    // Stands in for the gRPC transport: a single thread that completes every read
+    private final ExecutorService transport = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        transport.shutdownNow();
+    }
+
+    @Test
+    void stream_ShouldDeliverDocumentsInOrderAcrossPages() {
+        PagedQuery query = new PagedQuery(documents("doc", 50));
+
+        try (Stream<String> ids = QueryStreams.stream(query.at(0), 8, DocumentSnapshot::getId)) {
+            List<String> result = ids.collect(Collectors.toList());
+
+            assertEquals(50, result.size());
+            assertEquals("doc-0", result.get(0));
+            assertEquals("doc-49", result.get(49));
+        }
+        // Six full pages and a short one, which is known to be the last
+        assertEquals(7, query.pagesRead.get());
+    }
+
+    @Test
+    void stream_ShouldRethrowQueryFailure() {
+        Query query = mock(Query.class, RETURNS_SELF);
+        when(query.get()).thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("boom")));
+
+        try (Stream<String> ids = QueryStreams.stream(query, 2, DocumentSnapshot::getId)) {
+            IllegalStateException error = assertThrows(IllegalStateException.class, ids::count);
+            assertEquals("boom", error.getMessage());
+        }
+    }
+
+    @Test
+    void slowConsumer_ShouldNotHoldUpOtherReads() {
+        PagedQuery slow = new PagedQuery(documents("slow", 1000));
+        PagedQuery other = new PagedQuery(documents("other", 5));
+
+        try (Stream<DocumentSnapshot> stream = QueryStreams.stream(slow.at(0), 2, document -> document)) {
+            Iterator<DocumentSnapshot> documents = stream.iterator();
+            assertEquals("slow-0", documents.next().getId());
+
+            // The consumer stalls mid-page; an unrelated read on the same transport still completes
+            long count = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                try (Stream<DocumentSnapshot> unrelated = QueryStreams.stream(other.at(0), 2, document -> document)) {
+                    return unrelated.count();
+                }
+            });
+
+            assertEquals(5, count);
+            // Only the current page and the one read ahead
+            assertEquals(2, slow.pagesRead.get());
+        }
+    }
+
+    @Test
+    void close_ShouldCancelThePageInFlight() {
+        SettableApiFuture<QuerySnapshot> page = SettableApiFuture.create();
+        Query query = mock(Query.class, RETURNS_SELF);
+        when(query.get()).thenReturn(page);
+
+        QueryStreams.stream(query, 2, DocumentSnapshot::getId).close();
+
+        assertTrue(page.isCancelled());
+    }
+
+    private static List<QueryDocumentSnapshot> documents(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn(prefix + "-" + i);
+            return document;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * A query over a fixed list that supports limit and startAfter, and completes each read
+     * on the transport thread.
+     */
+    private final class PagedQuery {
+        private final List<QueryDocumentSnapshot> documents;
+        private final AtomicInteger pagesRead = new AtomicInteger();
+
+        private PagedQuery(List<QueryDocumentSnapshot> documents) {
+            this.documents = documents;
+        }
+
+        private Query at(int from) {
+            Query query = mock(Query.class);
+            when(query.startAfter(any(DocumentSnapshot.class))).thenAnswer(invocation ->
+                    at(documents.indexOf(invocation.<QueryDocumentSnapshot>getArgument(0)) + 1));
+            when(query.limit(anyInt())).thenAnswer(invocation -> limited(from, invocation.getArgument(0)));
+            return query;
+        }
+
+        private Query limited(int from, int limit) {
+            Query query = mock(Query.class);
+            when(query.get()).thenAnswer(invocation -> read(from, limit));
+            return query;
+        }
+
+        private ApiFuture<QuerySnapshot> read(int from, int limit) {
+            pagesRead.incrementAndGet();
+            List<QueryDocumentSnapshot> page =
+                    new ArrayList<>(documents.subList(from, Math.min(documents.size(), from + limit)));
+            QuerySnapshot snapshot = mock(QuerySnapshot.class);
+            when(snapshot.getDocuments()).thenReturn(page);
+
+            SettableApiFuture<QuerySnapshot> future = SettableApiFuture.create();
+            transport.execute(() -> future.set(snapshot));
+            return future;
+        }
+    }
+}
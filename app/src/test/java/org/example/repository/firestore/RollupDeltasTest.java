@@ -0,0 +1,111 @@
+package org.example.repository.firestore;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import org.example.model.Expense;
+import org.example.repository.codec.ExpenseCodec;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RollupDeltasTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 5, 12, 0);
+
+    private final Map<String, DocumentReference> rollupRefs = new HashMap<>();
+
+    @Test
+    void patch_ShouldWriteNoRollupWhenOnlyTitleOrDescriptionChange() {
+        Expense changes = new Expense();
+        changes.setTitle("Renamed");
+        changes.setDescription("Now described");
+
+        WriteBatch batch = writePatch(changes);
+
+        verify(batch, never()).set(any(DocumentReference.class), anyMap(), any(SetOptions.class));
+    }
+
+    @Test
+    void patch_ShouldWriteItsMonthWhenAmountChanges() {
+        Expense changes = new Expense();
+        changes.setAmount(12.5);
+
+        WriteBatch batch = writePatch(changes);
+
+        verify(batch).set(eq(rollupRef("2024-01")), anyMap(), any(SetOptions.class));
+        verify(batch, times(1)).set(any(DocumentReference.class), anyMap(), any(SetOptions.class));
+    }
+
+    @Test
+    void patch_ShouldWriteBothMonthsWhenDateMoves() {
+        Expense changes = new Expense();
+        changes.setDate(LocalDateTime.of(2024, 2, 1, 9, 0));
+
+        WriteBatch batch = writePatch(changes);
+
+        verify(batch).set(eq(rollupRef("2024-01")), anyMap(), any(SetOptions.class));
+        verify(batch).set(eq(rollupRef("2024-02")), anyMap(), any(SetOptions.class));
+    }
+
+    @Test
+    void patch_ShouldWriteNoRollupWhenDateMovesWithinTheMonth() {
+        Expense changes = new Expense();
+        changes.setDate(JANUARY.plusDays(10));
+
+        WriteBatch batch = writePatch(changes);
+
+        verify(batch, never()).set(any(DocumentReference.class), anyMap(), any(SetOptions.class));
+    }
+
+    @Test
+    void forUsers_ShouldLeaveOutUsersWhoseRollupsAreNotBuilt() {
+        RollupDeltas deltas = new RollupDeltas();
+        deltas.add(expense("user-1", JANUARY));
+        deltas.add(expense("user-2", JANUARY));
+
+        WriteBatch batch = mock(WriteBatch.class);
+        deltas.forUsers(Set.of("user-1")).writeTo(batch, (userId, month) -> rollupRef(userId + "/" + month));
+
+        verify(batch).set(eq(rollupRef("user-1/2024-01")), anyMap(), any(SetOptions.class));
+        verify(batch, times(1)).set(any(DocumentReference.class), anyMap(), any(SetOptions.class));
+        assertEquals(Set.of("user-1", "user-2"), deltas.userIds());
+    }
+
+    // The deltas FirestoreExpenseRepository.patchAsync writes: the stored expense removed, the patched one added
+    private WriteBatch writePatch(Expense changes) {
+        Expense current = expense("user-1", JANUARY);
+
+        RollupDeltas deltas = new RollupDeltas();
+        deltas.remove(current);
+        deltas.add(ExpenseCodec.INSTANCE.patch(current, changes));
+
+        WriteBatch batch = mock(WriteBatch.class);
+        deltas.writeTo(batch, (userId, month) -> rollupRef(month));
+        return batch;
+    }
+
+    private DocumentReference rollupRef(String key) {
+        return rollupRefs.computeIfAbsent(key, ignored -> mock(DocumentReference.class));
+    }
+
+    private static Expense expense(String userId, LocalDateTime date) {
+        Expense expense = new Expense();
+        expense.setId("expense-1");
+        expense.setTitle("Lunch");
+        expense.setUserId(userId);
+        expense.setAmount(10.0);
+        expense.setCategory("Food");
+        expense.setDate(date);
+        return expense;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.repository.local;
+
+import org.example.exception.PreconditionFailedException;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalExpenseRepositoryTest {
+
+    private LocalExpenseRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new LocalExpenseRepository();
+        ReflectionTestUtils.setField(repository, "expenses", new MemoryDocumentTable<Expense>(expense ->
+                new Expense(expense.getId(), expense.getTitle(), expense.getDescription(), expense.getAmount(),
+                        expense.getCategory(), expense.getDate(), expense.getUserId(), expense.getCreatedAt(),
+                        expense.getUpdatedAt(), expense.getVersion())));
+    }
+
+    @Test
+    void update_ShouldRejectStaleVersionAndBumpUserVersion() throws Exception {
+        Expense created = repository.createAsync(expense("user-1", 10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0))).get();
+        long versionBefore = repository.findVersionByUserId("user-1");
+
+        Expense updated = repository.updateAsync(created.getId(), created.getVersion(), current -> current.setAmount(12.0)).get();
+
+        assertEquals(12.0, repository.findById(created.getId()).getAmount());
+        assertNotEquals(created.getVersion(), updated.getVersion());
+        assertTrue(repository.findVersionByUserId("user-1") > versionBefore);
+
+        ExecutionException stale = assertThrows(ExecutionException.class, () -> repository
+                .updateAsync(created.getId(), created.getVersion(), current -> current.setAmount(1.0)).get());
+        assertInstanceOf(PreconditionFailedException.class, stale.getCause());
+        assertEquals(12.0, repository.findById(created.getId()).getAmount());
+    }
+
+    @Test
+    void findPageByUserId_ShouldResumeAfterCursorNewestFirst() throws Exception {
+        for (int day = 1; day <= 5; day++) {
+            repository.createAsync(expense("user-1", day, "Food", LocalDateTime.of(2024, 1, day, 12, 0))).get();
+        }
+        repository.createAsync(expense("user-2", 99.0, "Food", LocalDateTime.of(2024, 1, 3, 12, 0))).get();
+
+        List<Expense> first = repository.findPageByUserId("user-1", null, null, 2);
+        Expense last = first.get(first.size() - 1);
+        List<Expense> second = repository.findPageByUserId("user-1", last.getDate(), last.getId(), 10);
+
+        assertEquals(List.of(5.0, 4.0), first.stream().map(Expense::getAmount).toList());
+        assertEquals(List.of(3.0, 2.0, 1.0), second.stream().map(Expense::getAmount).toList());
+    }
+
+    @Test
+    void findPageByUserId_ShouldBreakDateTiesById() throws Exception {
+        LocalDateTime sameDate = LocalDateTime.of(2024, 1, 5, 12, 0);
+        for (int i = 1; i <= 5; i++) {
+            repository.createAsync(expense("user-1", i, "Food", sameDate)).get();
+        }
+
+        List<String> paged = new ArrayList<>();
+        List<Expense> page = repository.findPageByUserId("user-1", null, null, 2);
+        while (!page.isEmpty()) {
+            page.forEach(expense -> paged.add(expense.getId()));
+            Expense last = page.get(page.size() - 1);
+            page = repository.findPageByUserId("user-1", last.getDate(), last.getId(), 2);
+        }
+
+        List<String> idsDescending = repository.findByUserId("user-1").stream()
+                .map(Expense::getId)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        assertEquals(idsDescending, paged);
+    }
+
+    @Test
+    void findByUserIdAndDateRange_ShouldLeaveOutOtherUsersAndOtherDates() throws Exception {
+        repository.createAsync(expense("user-1", 10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0))).get();
+        repository.createAsync(expense("user-1", 20.0, "Food", LocalDateTime.of(2024, 2, 5, 12, 0))).get();
+        repository.createAsync(expense("user-2", 99.0, "Food", LocalDateTime.of(2024, 1, 6, 12, 0))).get();
+
+        List<Expense> january = repository.findByUserIdAndDateRange("user-1",
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 31, 23, 59));
+
+        assertEquals(List.of(10.0), january.stream().map(Expense::getAmount).toList());
+    }
+
+    @Test
+    void findRollupsByUserId_ShouldFollowMovesAndDeletes() throws Exception {
+        Expense january = repository.createAsync(expense("user-1", 10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0))).get();
+        Expense moved = repository.createAsync(expense("user-1", 5.0, "Rent", LocalDateTime.of(2024, 1, 6, 12, 0))).get();
+
+        repository.updateAsync(moved.getId(), null, current -> current.setDate(LocalDateTime.of(2024, 2, 1, 0, 0))).get();
+        repository.deleteById(january.getId());
+
+        List<MonthlyRollup> rollups = repository.findRollupsByUserId("user-1");
+        assertEquals(1, rollups.size());
+        assertEquals("2024-02", rollups.get(0).getMonth());
+        assertEquals(5.0, rollups.get(0).getCategories().get("Rent"));
+        assertTrue(repository.findByUserId("user-1").stream().noneMatch(e -> e.getId().equals(january.getId())));
+    }
+
+    private static Expense expense(String userId, double amount, String category, LocalDateTime date) {
+        Expense expense = new Expense();
+        expense.setTitle("Expense");
+        expense.setUserId(userId);
+        expense.setAmount(amount);
+        expense.setCategory(category);
+        expense.setDate(date);
+        return expense;
+    }
+}
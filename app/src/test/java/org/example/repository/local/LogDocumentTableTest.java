@@ -0,0 +1,79 @@
+package org.example.repository.local;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.model.Category;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogDocumentTableTest {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_ShouldRestoreLatestValuesAfterCleanClose() throws IOException {
+        try (LogDocumentTable<Category> table = open()) {
+            table.put("a", category("a", "Food"));
+            table.put("b", category("b", "Rent"));
+            table.put("a", category("a", "Groceries"));
+            assertTrue(table.remove("b"));
+        }
+        assertTrue(Files.exists(directory.resolve("categories.idx")));
+
+        try (LogDocumentTable<Category> table = open()) {
+            // Appended after the index was loaded, so the next open replays it
+            table.put("c", category("c", "Travel"));
+        }
+
+        try (LogDocumentTable<Category> table = open()) {
+            assertEquals(2, table.size());
+            assertEquals("Groceries", table.get("a").getName());
+            assertNull(table.get("b"));
+            assertEquals("Travel", table.get("c").getName());
+        }
+    }
+
+    @Test
+    void reopen_ShouldReplayLogAndDropTornTailWithoutIndex() throws IOException {
+        LogDocumentTable<Category> table = open();
+        table.put("a", category("a", "Food"));
+        table.put("b", category("b", "Rent"));
+        // Simulate a crash: no clean close, and the last record is only partly written
+        Path log = directory.resolve("categories.log");
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (LogDocumentTable<Category> reopened = open()) {
+            assertEquals(1, reopened.size());
+            assertEquals("Food", reopened.get("a").getName());
+            assertNull(reopened.get("b"));
+
+            reopened.put("b", category("b", "Rent"));
+            assertEquals("Rent", reopened.get("b").getName());
+        }
+    }
+
+    private LogDocumentTable<Category> open() throws IOException {
+        return new LogDocumentTable<>(directory, "categories", Category.class, mapper, false);
+    }
+
+    private static Category category(String id, String name) {
+        return new Category(id, name, null, null, null);
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyForJWTTokenGenerationInTestEnvironmentThatIsLongEnough");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        ReflectionTestUtils.setField(jwtUtils, "selfContained", true);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheTtlSeconds", 60L);
+        jwtUtils.init();
+    }
+
+    @Test
+    void verifyJwtToken_ShouldReturnClaimsAndServeRepeatsFromCache() {
+        String token = jwtUtils.generateJwtToken("user-123");
+
+        Claims first = jwtUtils.verifyJwtToken(token);
+        Claims second = jwtUtils.verifyJwtToken(token);
+
+        assertNotNull(first);
+        assertEquals("user-123", first.getSubject());
+        assertSame(first, second);
+        assertEquals(1, jwtUtils.claimsCacheStats().hitCount());
+    }
+
+    @Test
+    void selfContainedToken_ShouldCarryThePrincipal() {
+        UserPrincipal principal = new UserPrincipal("user-123", "alice", "alice@example.com", "secret",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        Claims claims = jwtUtils.verifyJwtToken(jwtUtils.generateJwtToken(principal));
+        UserPrincipal restored = UserPrincipal.fromClaims(claims);
+
+        assertNotNull(restored);
+        assertEquals("user-123", restored.getId());
+        assertEquals("alice", restored.getUsername());
+        assertEquals("alice@example.com", restored.getEmail());
+        assertEquals(List.of("ROLE_USER"), restored.getRoles());
+        assertNull(restored.getPassword());
+        assertEquals(principal.getFingerprint(), claims.get(UserPrincipal.CLAIM_FINGERPRINT, String.class));
+    }
+
+    @Test
+    void subjectOnlyToken_ShouldNotYieldAPrincipal() {
+        Claims claims = jwtUtils.verifyJwtToken(jwtUtils.generateJwtToken("user-123"));
+
+        assertNull(UserPrincipal.fromClaims(claims));
+    }
+
+    @Test
+    void verifyJwtToken_ShouldRejectTamperedToken() {
+        String token = jwtUtils.generateJwtToken("user-123");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(jwtUtils.verifyJwtToken(tampered));
+        assertFalse(jwtUtils.validateJwtToken(tampered));
+    }
+
+    @Test
+    void verifyJwtToken_ShouldRejectEmptyToken() {
+        assertNull(jwtUtils.verifyJwtToken(""));
+        assertNull(jwtUtils.verifyJwtToken(null));
+    }
+}
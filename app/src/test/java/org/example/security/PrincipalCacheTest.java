@@ -0,0 +1,89 @@
+package org.example.security;
+
+import org.example.model.User;
+import org.example.repository.UserChangedEvent;
+import org.example.repository.local.LocalUserRepository;
+import org.example.repository.local.MemoryDocumentTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrincipalCacheTest {
+
+    private LocalUserRepository userRepository;
+    private PrincipalCache principalCache;
+    private CustomUserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        principalCache = new PrincipalCache();
+        ReflectionTestUtils.setField(principalCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(principalCache, "ttlSeconds", 300L);
+        principalCache.init();
+
+        userRepository = new LocalUserRepository();
+        ReflectionTestUtils.setField(userRepository, "users", new MemoryDocumentTable<User>(user -> {
+            User copy = new User();
+            BeanUtils.copyProperties(user, copy);
+            return copy;
+        }));
+        // Delivered as the application context would, to the cache's @EventListener
+        ApplicationEventPublisher publisher = event -> principalCache.onUserChanged((UserChangedEvent) event);
+        ReflectionTestUtils.setField(userRepository, "eventPublisher", publisher);
+
+        userDetailsService = new CustomUserDetailsService();
+        ReflectionTestUtils.setField(userDetailsService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userDetailsService, "principalCache", principalCache);
+    }
+
+    @Test
+    void loadUserById_ShouldServeTheCachedPrincipalUntilTheUserIsSaved() throws Exception {
+        User user = new User();
+        user.setUsername("alice");
+        user.setEmail("alice@example.com");
+        user.setRoles(List.of("ROLE_USER"));
+        user.setEnabled(true);
+        String id = userRepository.save(user);
+
+        assertEquals(Set.of("ROLE_USER"), roles(userDetailsService.loadUserById(id)));
+        assertSame(userDetailsService.loadUserById(id), userDetailsService.loadUserById(id));
+
+        user.setRoles(List.of("ROLE_USER", "ROLE_ADMIN"));
+        userRepository.save(user);
+
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), roles(userDetailsService.loadUserById(id)));
+        assertEquals(2, principalCache.stats().loadCount());
+    }
+
+    @Test
+    void loadUserById_ShouldFailOnceTheUserIsDeleted() throws Exception {
+        User user = new User();
+        user.setUsername("bob");
+        user.setEmail("bob@example.com");
+        user.setRoles(List.of("ROLE_USER"));
+        user.setEnabled(true);
+        String id = userRepository.save(user);
+        userDetailsService.loadUserById(id);
+
+        userRepository.deleteById(id);
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserById(id));
+    }
+
+    private static Set<String> roles(UserDetails principal) {
+        return principal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.example.dto.BulkImportResponse;
+import org.example.model.Expense;
+import org.example.repository.local.LocalExpenseRepository;
+import org.example.repository.local.MemoryDocumentTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ExpenseImportServiceTest {
+
+    private static final String ROW = "{\"title\":\"Lunch\",\"amount\":12.5,\"category\":\"Food\"}";
+
+    private LocalExpenseRepository expenseRepository;
+    private ExpenseImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        expenseRepository = new LocalExpenseRepository();
+        ReflectionTestUtils.setField(expenseRepository, "expenses", new MemoryDocumentTable<Expense>(expense -> expense));
+        AuthService authService = mock(AuthService.class);
+        when(authService.getCurrentUserId()).thenReturn("user-1");
+
+        importService = new ExpenseImportService();
+        ReflectionTestUtils.setField(importService, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(importService, "authService", authService);
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(importService, "validator",
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(importService, "maxRows", 2);
+        ReflectionTestUtils.setField(importService, "maxInFlight", 10);
+    }
+
+    @Test
+    void ndjson_ShouldAcceptExactlyMaxRowsFollowedByBlankLines() throws Exception {
+        BulkImportResponse response = importNdjson(ROW + "\n\n" + ROW + "\n\n  \n");
+
+        assertEquals(2, response.getReceived());
+        assertEquals(2, response.getImported());
+        assertEquals(0, response.getFailed());
+        assertTrue(response.getErrors().isEmpty());
+    }
+
+    @Test
+    void ndjson_ShouldReportTheFirstRowOverTheLimit() throws Exception {
+        BulkImportResponse response = importNdjson(ROW + "\n" + ROW + "\n\n" + ROW + "\n" + ROW + "\n");
+
+        assertEquals(2, response.getReceived());
+        assertEquals(2, response.getImported());
+        assertEquals(1, response.getFailed());
+        assertEquals(3, response.getErrors().get(0).getRow());
+        assertTrue(response.getErrors().get(0).getMessage().startsWith("Row limit of 2 reached"));
+        assertEquals(2, expenseRepository.findByUserId("user-1").size());
+    }
+
+    @Test
+    void jsonArray_ShouldAcceptExactlyMaxRows() throws Exception {
+        BulkImportResponse response = importJson("[" + ROW + ",\n" + ROW + "]\n");
+
+        assertEquals(2, response.getImported());
+        assertEquals(0, response.getFailed());
+    }
+
+    @Test
+    void jsonArray_ShouldReportTheFirstRowOverTheLimit() throws Exception {
+        BulkImportResponse response = importJson("[" + ROW + "," + ROW + "," + ROW + "]");
+
+        assertEquals(2, response.getReceived());
+        assertEquals(2, response.getImported());
+        assertEquals(1, response.getFailed());
+        assertEquals(3, response.getErrors().get(0).getRow());
+    }
+
+    private BulkImportResponse importNdjson(String body) throws Exception {
+        return importService.importExpenses(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    private BulkImportResponse importJson(String body) throws Exception {
+        return importService.importExpenses(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), false);
+    }
+}
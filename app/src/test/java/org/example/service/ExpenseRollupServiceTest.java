@@ -0,0 +1,107 @@
+package org.example.service;
+
+import org.example.dto.StatisticsResponse;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.model.User;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ExpenseRollupServiceTest {
+
+    @Test
+    void computeRollups_ShouldGroupByMonthAndCategory() {
+        List<Expense> expenses = List.of(
+                expense(10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0)),
+                expense(5.0, "Food", LocalDateTime.of(2024, 1, 20, 8, 30)),
+                expense(20.0, null, LocalDateTime.of(2024, 1, 31, 23, 59)),
+                expense(7.5, "Transport", LocalDateTime.of(2024, 2, 1, 0, 0)));
+
+        List<MonthlyRollup> rollups = ExpenseRollupService.computeRollups(expenses.stream());
+
+        assertEquals(2, rollups.size());
+        MonthlyRollup january = rollups.get(0);
+        assertEquals("2024-01", january.getMonth());
+        assertEquals(35.0, january.getTotal());
+        assertEquals(3, january.getCount());
+        assertEquals(15.0, january.getCategories().get("Food"));
+        assertEquals(20.0, january.getCategories().get(MonthlyRollup.UNCATEGORIZED));
+        assertEquals("2024-02", rollups.get(1).getMonth());
+    }
+
+    @Test
+    void rebuildAll_ShouldReadTheVersionBeforeTheExpensesOfEachUser() throws Exception {
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        ExpenseRollupService service = new ExpenseRollupService();
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+
+        User user = new User();
+        user.setId("user-1");
+        when(userRepository.streamAll()).thenReturn(Stream.of(user));
+        when(expenseRepository.findVersionByUserId("user-1")).thenReturn(7L);
+        when(expenseRepository.streamSummariesByUserId("user-1")).thenReturn(Stream.of(
+                expense(10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0))));
+        when(expenseRepository.replaceRollupsAsync(anyString(), anyList(), anyLong()))
+                .thenReturn(completedFuture(null));
+
+        service.rebuildAll();
+
+        // Months written after the version was read are recounted by the repository
+        InOrder inOrder = inOrder(expenseRepository);
+        inOrder.verify(expenseRepository).findVersionByUserId("user-1");
+        inOrder.verify(expenseRepository).streamSummariesByUserId("user-1");
+        inOrder.verify(expenseRepository).replaceRollupsAsync(eq("user-1"), anyList(), eq(7L));
+        verify(userRepository, never()).findAll();
+    }
+
+    @Test
+    void statisticsFromRollups_ShouldMatchStatisticsOverRawExpenses() {
+        List<MonthlyRollup> rollups = ExpenseRollupService.computeRollups(Stream.of(
+                expense(10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0)),
+                expense(30.0, "Rent", LocalDateTime.of(2024, 2, 1, 9, 0))));
+
+        StatisticsResponse statistics = ExpenseService.statisticsFromRollups(rollups);
+
+        assertEquals(40.0, statistics.getTotalAmount());
+        assertEquals(2L, statistics.getTotalExpenses());
+        assertEquals(20.0, statistics.getAverageExpense());
+        assertEquals(10.0, statistics.getExpensesByCategory().get("Food"));
+        assertEquals(30.0, statistics.getExpensesByMonth().get("2024-02"));
+    }
+
+    @Test
+    void statisticsFromRollups_ShouldSkipEmptiedMonths() {
+        MonthlyRollup emptied = new MonthlyRollup("2024-03", 0.0, 0L, new HashMap<>());
+
+        StatisticsResponse statistics = ExpenseService.statisticsFromRollups(List.of(emptied));
+
+        assertEquals(0L, statistics.getTotalExpenses());
+        assertTrue(statistics.getExpensesByMonth().isEmpty());
+    }
+
+    private static Expense expense(double amount, String category, LocalDateTime date) {
+        Expense expense = new Expense();
+        expense.setAmount(amount);
+        expense.setCategory(category);
+        expense.setDate(date);
+        expense.setUserId("user-1");
+        return expense;
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.service;
+
+import org.example.dto.ExpenseResponse;
+import org.example.dto.StatisticsResponse;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.repository.ExpenseRepository;
+import org.example.repository.ExpenseSummaries;
+import org.example.repository.ExpenseTotals;
+import org.example.repository.local.LocalExpenseRepository;
+import org.example.repository.local.MemoryDocumentTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class ExpenseServiceTest {
+
+    private ExpenseRepository expenseRepository;
+    private ExpenseService expenseService;
+
+    @BeforeEach
+    void setUp() {
+        expenseRepository = mock(ExpenseRepository.class);
+        AuthService authService = mock(AuthService.class);
+        when(authService.getCurrentUserId()).thenReturn("user-1");
+
+        expenseService = new ExpenseService();
+        ReflectionTestUtils.setField(expenseService, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(expenseService, "authService", authService);
+    }
+
+    @Test
+    void getStatistics_ShouldAggregateExpensesUntilRollupsAreBuilt() throws Exception {
+        // A write after deploy has created one month, but no rebuild has run yet
+        when(expenseRepository.findRollupsByUserIdAsync("user-1")).thenReturn(completedFuture(null));
+        when(expenseRepository.aggregateWithSummariesByUserIdAsync(eq("user-1"), isNull(), isNull()))
+                .thenReturn(completedFuture(new ExpenseSummaries(new ExpenseTotals(2, 40.0, 20.0), List.of(
+                        summary(10.0, "Food", LocalDateTime.of(2023, 6, 1, 12, 0)),
+                        summary(30.0, "Rent", LocalDateTime.of(2024, 2, 1, 9, 0))))));
+
+        StatisticsResponse statistics = expenseService.getStatistics().get();
+
+        assertEquals(40.0, statistics.getTotalAmount());
+        assertEquals(2L, statistics.getTotalExpenses());
+        assertEquals(20.0, statistics.getAverageExpense());
+        assertEquals(Map.of("2023-06", 10.0, "2024-02", 30.0), statistics.getExpensesByMonth());
+    }
+
+    @Test
+    void getStatistics_ShouldCountLegacyExpensesWithoutADateOrAmount() throws Exception {
+        when(expenseRepository.findRollupsByUserIdAsync("user-1")).thenReturn(completedFuture(null));
+        when(expenseRepository.aggregateWithSummariesByUserIdAsync(eq("user-1"), isNull(), isNull()))
+                .thenReturn(completedFuture(new ExpenseSummaries(new ExpenseTotals(3, 15.0, 7.5), List.of(
+                        summary(10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0)),
+                        summary(5.0, "Food", null),
+                        summary(null, "Rent", LocalDateTime.of(2024, 2, 1, 9, 0))))));
+
+        StatisticsResponse statistics = expenseService.getStatistics().get();
+
+        assertEquals(3L, statistics.getTotalExpenses());
+        assertEquals(15.0, statistics.getTotalAmount());
+        assertEquals(Map.of("Food", 15.0), statistics.getExpensesByCategory());
+        assertEquals(Map.of("2024-01", 10.0), statistics.getExpensesByMonth());
+    }
+
+    @Test
+    void getStatistics_ShouldTrustBuiltRollupsEvenWhenEmpty() throws Exception {
+        when(expenseRepository.findRollupsByUserIdAsync("user-1")).thenReturn(completedFuture(List.of()));
+
+        StatisticsResponse statistics = expenseService.getStatistics().get();
+
+        assertEquals(0L, statistics.getTotalExpenses());
+        verify(expenseRepository, never()).aggregateWithSummariesByUserIdAsync(any(), any(), any());
+    }
+
+    @Test
+    void getStatistics_ShouldReadBuiltRollupsWithoutAggregating() throws Exception {
+        when(expenseRepository.findRollupsByUserIdAsync("user-1")).thenReturn(completedFuture(List.of(
+                new MonthlyRollup("2024-01", 25.0, 2L, Map.of("Food", 25.0)))));
+
+        StatisticsResponse statistics = expenseService.getStatistics().get();
+
+        assertEquals(25.0, statistics.getTotalAmount());
+        assertEquals(2L, statistics.getTotalExpenses());
+        verify(expenseRepository, never()).aggregateWithSummariesByUserIdAsync(any(), any(), any());
+    }
+
+    @Test
+    void getStatisticsByDateRange_ShouldAgreeWithTheBreakdownsOverLocalStorage() throws Exception {
+        LocalExpenseRepository local = useLocalRepository();
+        local.createAsync(expense("user-1", 10.0, "Food", LocalDateTime.of(2024, 1, 5, 12, 0))).get();
+        local.createAsync(expense("user-1", 25.5, "Rent", LocalDateTime.of(2024, 1, 31, 23, 0))).get();
+        local.createAsync(expense("user-1", 4.5, "Food", LocalDateTime.of(2024, 2, 1, 8, 0))).get();
+        local.createAsync(expense("user-1", 100.0, "Food", LocalDateTime.of(2024, 3, 1, 8, 0))).get();
+        local.createAsync(expense("user-2", 50.0, "Food", LocalDateTime.of(2024, 1, 10, 12, 0))).get();
+
+        StatisticsResponse statistics = expenseService.getStatisticsByDateRange(
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 2, 29, 23, 59)).get();
+
+        assertEquals(40.0, statistics.getTotalAmount());
+        assertEquals(3L, statistics.getTotalExpenses());
+        assertEquals(40.0 / 3, statistics.getAverageExpense(), 1e-9);
+        assertEquals(Map.of("Food", 14.5, "Rent", 25.5), statistics.getExpensesByCategory());
+        assertEquals(Map.of("2024-01", 35.5, "2024-02", 4.5), statistics.getExpensesByMonth());
+    }
+
+    @Test
+    void getExpensesByIds_ShouldDropMissingAndOtherUsersExpensesInRequestOrder() throws Exception {
+        LocalExpenseRepository local = useLocalRepository();
+        Expense first = local.createAsync(expense("user-1", 1.0, "Food", LocalDateTime.of(2024, 1, 1, 12, 0))).get();
+        Expense second = local.createAsync(expense("user-1", 2.0, "Food", LocalDateTime.of(2024, 1, 2, 12, 0))).get();
+        Expense others = local.createAsync(expense("user-2", 3.0, "Food", LocalDateTime.of(2024, 1, 3, 12, 0))).get();
+
+        List<ExpenseResponse> found = expenseService.getExpensesByIds(
+                List.of(second.getId(), "missing", others.getId(), first.getId(), second.getId())).get();
+
+        assertEquals(List.of(second.getId(), first.getId()), found.stream().map(ExpenseResponse::getId).toList());
+    }
+
+    @Test
+    void getExpensesByIds_ShouldRejectMoreThanTheCap() throws Exception {
+        useLocalRepository();
+        List<String> atCap = IntStream.range(0, ExpenseService.MAX_BATCH_GET_IDS).mapToObj(i -> "id-" + i).toList();
+        List<String> overCap = IntStream.rangeClosed(0, ExpenseService.MAX_BATCH_GET_IDS).mapToObj(i -> "id-" + i).toList();
+
+        assertTrue(expenseService.getExpensesByIds(atCap).get().isEmpty());
+        RuntimeException rejected = assertThrows(RuntimeException.class, () -> expenseService.getExpensesByIds(overCap));
+        assertTrue(rejected.getMessage().startsWith("At most 100 ids"));
+    }
+
+    private LocalExpenseRepository useLocalRepository() {
+        LocalExpenseRepository local = new LocalExpenseRepository();
+        ReflectionTestUtils.setField(local, "expenses", new MemoryDocumentTable<Expense>(expense -> expense));
+        ReflectionTestUtils.setField(expenseService, "expenseRepository", local);
+        return local;
+    }
+
+    private static Expense expense(String userId, double amount, String category, LocalDateTime date) {
+        Expense expense = summary(amount, category, date);
+        expense.setTitle("Expense");
+        expense.setUserId(userId);
+        return expense;
+    }
+
+    private static Expense summary(Double amount, String category, LocalDateTime date) {
+        Expense expense = new Expense();
+        expense.setAmount(amount);
+        expense.setCategory(category);
+        expense.setDate(date);
+        return expense;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.service;
+
+import org.example.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class LastLoginRecorderTest {
+
+    private UserRepository userRepository;
+    private LastLoginRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        recorder = new LastLoginRecorder();
+        ReflectionTestUtils.setField(recorder, "userRepository", userRepository);
+        ReflectionTestUtils.setField(recorder, "maxPending", 100);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldCoalesceLoginsPerUserKeepingTheLatest() throws Exception {
+        LocalDateTime first = LocalDateTime.of(2024, 3, 1, 8, 0);
+        LocalDateTime second = first.plusMinutes(5);
+        recorder.record("user-1", second);
+        recorder.record("user-1", first);
+        recorder.record("user-2", first);
+
+        assertEquals(2, recorder.flush());
+
+        ArgumentCaptor<Map<String, LocalDateTime>> written = ArgumentCaptor.forClass(Map.class);
+        verify(userRepository).updateLastLoginTimes(written.capture());
+        assertEquals(Map.of("user-1", second, "user-2", first), written.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_ShouldStayBoundedWhileTheRepositoryIsStalled() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.updateLastLoginTimes(anyMap())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return 0;
+        });
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 8, 0);
+        try {
+            // Reaching the bound queues a flush, which takes these and then stalls
+            for (int i = 0; i < 100; i++) {
+                recorder.record("user-" + i, start.plusSeconds(i));
+            }
+            assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+            for (int i = 100; i < 350; i++) {
+                recorder.record("user-" + i, start.plusSeconds(i));
+            }
+
+            Map<String, LocalDateTime> pending = (Map<String, LocalDateTime>) ReflectionTestUtils.getField(recorder, "pending");
+            assertEquals(100, pending.size());
+            assertTrue(pending.containsKey("user-349"));
+            assertFalse(pending.containsKey("user-249"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void flush_ShouldSkipTheRepositoryWhenNothingWasRecorded() throws Exception {
+        assertEquals(0, recorder.flush());
+
+        verify(userRepository, never()).updateLastLoginTimes(anyMap());
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.service;
+
+import org.example.model.User;
+import org.example.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserIndexBackfillServiceTest {
+
+    private UserRepository userRepository;
+    private UserIndexBackfillService service;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.markIndexCompleteAsync()).thenReturn(completedFuture(null));
+
+        service = new UserIndexBackfillService();
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+    }
+
+    @Test
+    void backfill_ShouldMarkTheIndexCompleteAfterACleanRun() throws Exception {
+        User alice = user("user-1");
+        User bob = user("user-2");
+        when(userRepository.streamAll()).thenReturn(Stream.of(alice, bob));
+        when(userRepository.indexAsync(any())).thenReturn(completedFuture(null));
+
+        assertEquals(List.of(), service.backfill());
+
+        verify(userRepository).indexAsync(alice);
+        verify(userRepository).indexAsync(bob);
+        verify(userRepository).markIndexCompleteAsync();
+    }
+
+    @Test
+    void backfill_ShouldKeepTheFallbackWhileUsersConflict() throws Exception {
+        User alice = user("user-1");
+        User duplicate = user("user-2");
+        when(userRepository.streamAll()).thenReturn(Stream.of(alice, duplicate));
+        when(userRepository.indexAsync(alice)).thenReturn(completedFuture(null));
+        when(userRepository.indexAsync(duplicate)).thenReturn(
+                CompletableFuture.failedFuture(new RuntimeException("Error: Email is already in use!")));
+
+        assertEquals(List.of("user-2"), service.backfill());
+
+        verify(userRepository, never()).markIndexCompleteAsync();
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
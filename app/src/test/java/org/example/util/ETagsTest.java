@@ -0,0 +1,61 @@
+package org.example.util;
+
+import org.example.dto.Versioned;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagsTest {
+
+    @Test
+    void matches_ShouldUseWeakComparisonAndLists() {
+        String etag = ETags.of("categories", 7);
+
+        assertTrue(ETags.matches(etag, etag));
+        assertTrue(ETags.matches(ETags.of("other", 1) + ", W/" + etag, etag));
+        assertTrue(ETags.matches("*", etag));
+        assertFalse(ETags.matches(ETags.of("categories", 6), etag));
+        assertFalse(ETags.matches(null, etag));
+    }
+
+    @Test
+    void of_ShouldHideTheScope() {
+        String etag = ETags.of("expenses.user-42", 3);
+
+        assertFalse(etag.contains("user-42"));
+        assertEquals(etag, ETags.of("expenses.user-42", 3));
+        assertNotEquals(etag, ETags.of("expenses.user-43", 3));
+        assertNotEquals(etag, ETags.of("statistics.user-42", 3));
+    }
+
+    @Test
+    void ifChanged_ShouldSkipBodyWhenCurrent() {
+        AtomicInteger computed = new AtomicInteger();
+
+        Versioned<List<String>> result = ETags.ifChanged(CompletableFuture.completedFuture(3L), "expenses.u1",
+                ETags.of("expenses.u1", 3), () -> {
+                    computed.incrementAndGet();
+                    return CompletableFuture.completedFuture(List.of("a"));
+                }).join();
+        ResponseEntity<List<String>> response = ETags.toResponse(result);
+
+        assertEquals(0, computed.get());
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(ETags.of("expenses.u1", 3), response.getHeaders().getETag());
+    }
+
+    @Test
+    void ifChanged_ShouldComputeBodyWhenStale() {
+        Versioned<List<String>> result = ETags.ifChanged(CompletableFuture.completedFuture(4L), "expenses.u1",
+                ETags.of("expenses.u1", 3), () -> CompletableFuture.completedFuture(List.of("a"))).join();
+
+        assertEquals(List.of("a"), result.getBody());
+        assertEquals(ETags.of("expenses.u1", 4), result.getEtag());
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpensePageTokenTest {
+
+    @Test
+    void encodeDecode_ShouldRoundTripDateAndId() {
+        LocalDateTime date = LocalDateTime.of(2024, 1, 20, 12, 30, 15);
+        ExpensePageToken token = new ExpensePageToken(date, "expense-123");
+
+        ExpensePageToken decoded = ExpensePageToken.decode(token.encode());
+
+        assertEquals(date, decoded.getDate());
+        assertEquals("expense-123", decoded.getId());
+    }
+
+    @Test
+    void encode_ShouldBeUrlSafe() {
+        String encoded = new ExpensePageToken(LocalDateTime.now(), "a/b+c").encode();
+
+        assertFalse(encoded.contains("+"));
+        assertFalse(encoded.contains("/"));
+        assertFalse(encoded.contains("="));
+    }
+
+    @Test
+    void decode_WithGarbage_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> ExpensePageToken.decode("not a token!"));
+        assertThrows(IllegalArgumentException.class, () -> ExpensePageToken.decode("bm8tc2VwYXJhdG9y"));
+    }
+
+    @Test
+    void decode_WithoutDate_ShouldThrowIllegalArgument() {
+        String token = new ExpensePageToken(null, "expense-123").encode();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> ExpensePageToken.decode(token));
+        assertEquals("Invalid page token", error.getMessage());
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.benchmark;
+
+import org.example.model.Expense;
+import org.example.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic fixtures shaped like real data: a dozen categories, amounts from cents to
+ * hundreds, dates spread over three years, and a description on most rows.
+ */
+public final class BenchmarkData {
+
+    public static final String USER_ID = "bench-user";
+
+    private static final String[] CATEGORIES = {
+            "Food", "Groceries", "Rent", "Transport", "Utilities", "Health",
+            "Entertainment", "Travel", "Education", "Shopping", "Gifts", "Insurance"};
+    private static final LocalDateTime START = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final int SPAN_MINUTES = 3 * 365 * 24 * 60;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Stored expenses with ids, owner and timestamps set, as a repository returns them.
+     */
+    public static List<Expense> expenses(String userId, int count) {
+        Random random = new Random(42);
+        List<Expense> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Expense expense = newExpense(random, userId);
+            expense.setId(String.format("exp-%08d", i));
+            expense.setCreatedAt(expense.getDate().plusHours(1));
+            expense.setUpdatedAt(expense.getCreatedAt());
+            expense.setVersion(Long.toString(i));
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+
+    /**
+     * An expense as a client submits it: no id, version or timestamps.
+     */
+    public static Expense newExpense(Random random, String userId) {
+        Expense expense = new Expense();
+        expense.setTitle("Expense " + random.nextInt(10_000));
+        expense.setDescription(random.nextInt(4) == 0 ? null : "Paid with card ending " + (1000 + random.nextInt(9000)));
+        expense.setAmount(Math.round((0.5 + random.nextDouble() * 400) * 100) / 100.0);
+        expense.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        expense.setDate(START.plusMinutes(random.nextInt(SPAN_MINUTES)));
+        expense.setUserId(userId);
+        return expense;
+    }
+
+    public static Expense copy(Expense expense) {
+        return new Expense(expense.getId(), expense.getTitle(), expense.getDescription(), expense.getAmount(),
+                expense.getCategory(), expense.getDate(), expense.getUserId(), expense.getCreatedAt(),
+                expense.getUpdatedAt(), expense.getVersion());
+    }
+
+    public static List<User> users(int count) {
+        Random random = new Random(7);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime created = START.plusMinutes(random.nextInt(SPAN_MINUTES));
+            users.add(new User("user-" + i, "user" + i, "user" + i + "@example.com",
+                    "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5Y9zZ6sQ1u1cS8YdQvY9e6K",
+                    "First" + i, "Last" + i, List.of("ROLE_USER"), true,
+                    created, created.plusDays(random.nextInt(30)), created.plusDays(random.nextInt(90))));
+        }
+        return users;
+    }
+}
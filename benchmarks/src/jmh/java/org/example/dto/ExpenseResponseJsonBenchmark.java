@@ -0,0 +1,58 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.example.benchmark.BenchmarkData;
+import org.example.config.JacksonConfig;
+import org.example.model.Expense;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a list of n ExpenseResponses with the application's ObjectMapper, as the
+ * list endpoints do, through a per-call writer and through a writer built once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpenseResponseJsonBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int expenses;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter listWriter;
+    private List<ExpenseResponse> responses;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new JacksonConfig().objectMapper();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, ExpenseResponse.class));
+        responses = new ArrayList<>(expenses);
+        for (Expense expense : BenchmarkData.expenses(BenchmarkData.USER_ID, expenses)) {
+            responses.add(new ExpenseResponse(expense.getId(), expense.getTitle(), expense.getDescription(),
+                    expense.getAmount(), expense.getCategory(), expense.getDate(), expense.getUserId(),
+                    expense.getCreatedAt(), expense.getUpdatedAt(), expense.getVersion()));
+        }
+    }
+
+    @Benchmark
+    public OutputStream objectMapper() throws IOException {
+        OutputStream sink = OutputStream.nullOutputStream();
+        objectMapper.writeValue(sink, responses);
+        return sink;
+    }
+
+    @Benchmark
+    public OutputStream cachedWriter() throws IOException {
+        OutputStream sink = OutputStream.nullOutputStream();
+        listWriter.writeValue(sink, responses);
+        return sink;
+    }
+}
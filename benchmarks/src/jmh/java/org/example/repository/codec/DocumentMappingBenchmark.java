@@ -0,0 +1,91 @@
+package org.example.repository.codec;
+
+import org.example.benchmark.BenchmarkData;
+import org.example.dto.FirebaseOAuth2User;
+import org.example.model.Expense;
+import org.example.model.OAuth2User;
+import org.example.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping between models and Firestore document data, per document. Each invocation maps a
+ * pool of varied documents, so results are not flattered by one document staying hot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DocumentMappingBenchmark {
+
+    private static final int POOL_SIZE = 1024;
+
+    private List<Expense> expenses;
+    private List<Map<String, Object>> expenseData;
+    private List<User> users;
+    private List<Map<String, Object>> userData;
+    private List<OAuth2User> oauth2Users;
+
+    @Setup
+    public void setUp() {
+        expenses = BenchmarkData.expenses(BenchmarkData.USER_ID, POOL_SIZE);
+        users = BenchmarkData.users(POOL_SIZE);
+        expenseData = new ArrayList<>(POOL_SIZE);
+        userData = new ArrayList<>(POOL_SIZE);
+        oauth2Users = new ArrayList<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            expenseData.add(ExpenseCodec.INSTANCE.encode(expenses.get(i)));
+            userData.add(UserCodec.INSTANCE.encode(users.get(i)));
+            User user = users.get(i);
+            LocalDateTime now = user.getCreatedAt();
+            oauth2Users.add(new OAuth2User(user.getId() + "_google", user.getEmail(), user.getUsername(),
+                    user.getFirstName(), user.getLastName(), "https://example.com/" + i + ".png", "google",
+                    "sub-" + i, true, user.getRoles(), true, now, now, now));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POOL_SIZE)
+    public void encodeExpense(Blackhole blackhole) {
+        for (Expense expense : expenses) {
+            blackhole.consume(ExpenseCodec.INSTANCE.encode(expense));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POOL_SIZE)
+    public void decodeExpense(Blackhole blackhole) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            blackhole.consume(ExpenseCodec.INSTANCE.decode(expenses.get(i).getId(), expenseData.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POOL_SIZE)
+    public void encodeUser(Blackhole blackhole) {
+        for (User user : users) {
+            blackhole.consume(UserCodec.INSTANCE.encode(user));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POOL_SIZE)
+    public void decodeUser(Blackhole blackhole) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            blackhole.consume(UserCodec.INSTANCE.decode(users.get(i).getId(), userData.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POOL_SIZE)
+    public void oauth2UserToFirestore(Blackhole blackhole) {
+        for (OAuth2User oauth2User : oauth2Users) {
+            blackhole.consume(FirebaseOAuth2User.fromOAuth2User(oauth2User));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.repository.local;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.benchmark.BenchmarkData;
+import org.example.model.Expense;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The local storage backends side by side: creating an expense, reading one by id and
+ * reading the first page of a user's expenses, against a store preloaded with n expenses
+ * spread over 100 users. Firestore is left out; its cost is the network round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StorageBackendBenchmark {
+
+    private static final int USERS = 100;
+
+    @Param({"memory", "disk", "disk-fsync"})
+    public String backend;
+
+    @Param({"1000", "100000"})
+    public int expenses;
+
+    private Path directory;
+    private DocumentTable<Expense> table;
+    private LocalExpenseRepository repository;
+    private String[] ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (backend.equals("memory")) {
+            table = new MemoryDocumentTable<>(BenchmarkData::copy);
+        } else {
+            ObjectMapper mapper = JsonMapper.builder()
+                    .addModule(new JavaTimeModule())
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .build();
+            directory = Files.createTempDirectory("storage-bench");
+            table = new LogDocumentTable<>(directory, "expenses", Expense.class, mapper, backend.equals("disk-fsync"));
+        }
+        repository = new LocalExpenseRepository();
+        ReflectionTestUtils.setField(repository, "expenses", table);
+
+        Random random = new Random(1);
+        ids = new String[expenses];
+        for (int i = 0; i < expenses; i++) {
+            ids[i] = repository.createAsync(BenchmarkData.newExpense(random, user(i))).join().getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        table.close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Expense create(ThreadState state) {
+        return repository.createAsync(BenchmarkData.newExpense(state.random, user(state.random.nextInt(USERS)))).join();
+    }
+
+    @Benchmark
+    public Expense findById(ThreadState state) {
+        return repository.findByIdAsync(ids[state.random.nextInt(ids.length)]).join();
+    }
+
+    @Benchmark
+    public List<Expense> firstPage(ThreadState state) {
+        return repository.findPageByUserIdAsync(user(state.random.nextInt(USERS)), null, null, 50).join();
+    }
+
+    private static String user(int index) {
+        return "user-" + (index % USERS);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+    }
+}
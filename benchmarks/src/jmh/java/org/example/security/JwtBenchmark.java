@@ -0,0 +1,67 @@
+package org.example.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token work done per login and per authenticated request. Verification is measured both
+ * as a claims-cache hit, the common case for a client reusing its token, and with the cache
+ * disabled, which is what every request paid before it existed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmarkSecretKeyForJWTTokenGenerationThatIsLongEnoughForHS512Signing";
+
+    private JwtUtils cachingJwtUtils;
+    private JwtUtils uncachedJwtUtils;
+    private UserPrincipal principal;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingJwtUtils = jwtUtils(10_000);
+        uncachedJwtUtils = jwtUtils(0);
+        principal = new UserPrincipal("bench-user", "bench", "bench@example.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = cachingJwtUtils.generateJwtToken(principal);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachingJwtUtils.generateJwtToken(principal);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return cachingJwtUtils.verifyJwtToken(token);
+    }
+
+    @Benchmark
+    public Claims verifyUncached() {
+        return uncachedJwtUtils.verifyJwtToken(token);
+    }
+
+    @Benchmark
+    public UserPrincipal verifyAndBuildPrincipal() {
+        return UserPrincipal.fromClaims(cachingJwtUtils.verifyJwtToken(token));
+    }
+
+    private static JwtUtils jwtUtils(long claimsCacheMaxSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86_400_000);
+        ReflectionTestUtils.setField(jwtUtils, "selfContained", true);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaxSize", claimsCacheMaxSize);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheTtlSeconds", 300L);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+}
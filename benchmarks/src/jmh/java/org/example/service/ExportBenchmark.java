@@ -0,0 +1,90 @@
+package org.example.service;
+
+import org.example.benchmark.BenchmarkData;
+import org.example.config.JacksonConfig;
+import org.example.dto.ExpenseResponse;
+import org.example.model.Expense;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of n expenses to each format, including the conversion to responses, with chunks
+ * handed over the way ExportService reads them from the repository stream. Output goes to a
+ * byte-counting sink, so only conversion and serialization are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportBenchmark {
+
+    private static final int CHUNK_SIZE = 500;
+
+    @Param({"1000", "100000", "1000000"})
+    public int expenses;
+
+    private List<Expense> rows;
+    private ExportService exportService;
+
+    @Setup
+    public void setUp() {
+        rows = BenchmarkData.expenses(BenchmarkData.USER_ID, expenses);
+        exportService = new ExportService();
+        ReflectionTestUtils.setField(exportService, "objectMapper", new JacksonConfig().objectMapper());
+        exportService.initWriters();
+    }
+
+    @Benchmark
+    public long csv() throws IOException {
+        CountingSink sink = new CountingSink();
+        exportService.writeCsv(sink, this::forEachChunk);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        CountingSink sink = new CountingSink();
+        exportService.writeJsonArray(sink, false, this::forEachChunk);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long ndjson() throws IOException {
+        CountingSink sink = new CountingSink();
+        exportService.writeNdjson(sink, this::forEachChunk);
+        return sink.count;
+    }
+
+    private void forEachChunk(ExportService.PageConsumer consumer) throws IOException {
+        List<ExpenseResponse> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (Expense expense : rows) {
+            chunk.add(ExpenseService.toResponse(expense));
+            if (chunk.size() == CHUNK_SIZE) {
+                consumer.accept(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    private static final class CountingSink extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
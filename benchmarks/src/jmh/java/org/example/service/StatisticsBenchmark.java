@@ -0,0 +1,72 @@
+package org.example.service;
+
+import org.example.benchmark.BenchmarkData;
+import org.example.dto.StatisticsResponse;
+import org.example.model.Expense;
+import org.example.model.MonthlyRollup;
+import org.example.repository.local.LocalExpenseRepository;
+import org.example.repository.local.MemoryDocumentTable;
+import org.example.security.UserPrincipal;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics for one user with n expenses: the rollup computation behind rebuilds, the
+ * rollup-to-statistics step behind GET /api/statistics, and the aggregation path behind the
+ * date-range statistics, run through ExpenseService against the in-memory repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StatisticsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int expenses;
+
+    private List<Expense> userExpenses;
+    private List<MonthlyRollup> rollups;
+    private ExpenseService expenseService;
+
+    @Setup
+    public void setUp() {
+        userExpenses = BenchmarkData.expenses(BenchmarkData.USER_ID, expenses);
+        rollups = ExpenseRollupService.computeRollups(userExpenses.stream());
+
+        LocalExpenseRepository repository = new LocalExpenseRepository();
+        ReflectionTestUtils.setField(repository, "expenses", new MemoryDocumentTable<>(BenchmarkData::copy));
+        for (Expense expense : BenchmarkData.expenses(BenchmarkData.USER_ID, expenses)) {
+            repository.createAsync(expense).join();
+        }
+        expenseService = new ExpenseService();
+        ReflectionTestUtils.setField(expenseService, "expenseRepository", repository);
+        ReflectionTestUtils.setField(expenseService, "authService", new AuthService());
+
+        // Benchmark threads are not the setup thread, so share the authenticated user globally
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        UserPrincipal principal = new UserPrincipal(BenchmarkData.USER_ID, "bench", "bench@example.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Benchmark
+    public List<MonthlyRollup> computeRollups() {
+        return ExpenseRollupService.computeRollups(userExpenses.stream());
+    }
+
+    @Benchmark
+    public StatisticsResponse statisticsFromRollups() {
+        return ExpenseService.statisticsFromRollups(rollups);
+    }
+
+    @Benchmark
+    public StatisticsResponse statisticsByDateRange() {
+        return expenseService.getStatisticsByDateRange(null, null).join();
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The API calls the scenarios make. Each call is timed into {@link EndpointStats} under its
+ * method and path; a failed call (transport error or a 4xx/5xx) counts as an error instead.
+ */
+class ApiClient {
+
+    private static final String[] CATEGORIES = {
+            "Food & Dining", "Transportation", "Shopping", "Entertainment", "Bills & Utilities", "Healthcare"
+    };
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final EndpointStats stats;
+
+    ApiClient(String baseUrl, EndpointStats stats) {
+        this.baseUrl = baseUrl;
+        this.stats = stats;
+    }
+
+    boolean register(VirtualUser user) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("username", user.username);
+        body.put("email", user.username + "@loadtest.local");
+        body.put("password", user.password);
+        body.put("firstName", "Load");
+        body.put("lastName", "Test");
+        return send(user, "POST /api/auth/register", post("/api/auth/register", body)) != null;
+    }
+
+    boolean login(VirtualUser user) {
+        Map<String, Object> body = Map.of("usernameOrEmail", user.username, "password", user.password);
+        HttpResponse<byte[]> response = send(user, "POST /api/auth/login", post("/api/auth/login", body));
+        if (response == null) {
+            return false;
+        }
+        user.token = readJson(response).path("token").asText(null);
+        return user.token != null;
+    }
+
+    /**
+     * Adds {@code count} expenses spread over the past two years, in one bulk request.
+     */
+    boolean seedExpenses(VirtualUser user, int count) {
+        List<Map<String, Object>> expenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expenses.add(newExpense(user.random));
+        }
+        return send(user, "POST /api/expenses/bulk", authorized(post("/api/expenses/bulk", expenses), user)) != null;
+    }
+
+    void createExpense(VirtualUser user) {
+        send(user, "POST /api/expenses", authorized(post("/api/expenses", newExpense(user.random)), user));
+    }
+
+    /**
+     * A conditional GET that remembers the ETag, so unchanged data comes back as a 304.
+     */
+    void poll(VirtualUser user, String path) {
+        HttpRequest.Builder request = authorized(HttpRequest.newBuilder(uri(path)).GET(), user);
+        String etag = user.etags.get(path);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<byte[]> response = send(user, "GET " + path, request);
+        if (response != null) {
+            response.headers().firstValue("ETag").ifPresent(value -> user.etags.put(path, value));
+        }
+    }
+
+    void get(VirtualUser user, String path) {
+        send(user, "GET " + path, authorized(HttpRequest.newBuilder(uri(path)).GET(), user));
+    }
+
+    private HttpResponse<byte[]> send(VirtualUser user, String endpoint, HttpRequest.Builder request) {
+        long start = user.requestStart();
+        try {
+            HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() >= 400) {
+                stats.recordError(endpoint);
+                return null;
+            }
+            stats.record(endpoint, System.nanoTime() - start);
+            return response;
+        } catch (IOException e) {
+            stats.recordError(endpoint);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder post(String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static HttpRequest.Builder authorized(HttpRequest.Builder request, VirtualUser user) {
+        return request.header("Authorization", "Bearer " + user.token);
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private JsonNode readJson(HttpResponse<byte[]> response) {
+        try {
+            return mapper.readTree(response.body());
+        } catch (IOException e) {
+            return mapper.missingNode();
+        }
+    }
+
+    private static Map<String, Object> newExpense(Random random) {
+        Map<String, Object> expense = new LinkedHashMap<>();
+        expense.put("title", "Expense " + random.nextInt(1_000_000));
+        expense.put("description", "Generated by the load test");
+        expense.put("amount", Math.round((1 + random.nextDouble() * 499) * 100) / 100.0);
+        expense.put("category", CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        expense.put("date", LocalDateTime.now().minusMinutes(random.nextInt(2 * 365 * 24 * 60)).withNano(0).toString());
+        return expense;
+    }
+}
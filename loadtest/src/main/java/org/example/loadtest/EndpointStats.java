@@ -0,0 +1,101 @@
+package org.example.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counts per endpoint, recorded in microseconds from many
+ * threads at once.
+ */
+class EndpointStats {
+
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long nanos) {
+        recorders.computeIfAbsent(endpoint, key -> new Recorder(3))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordError(String endpoint) {
+        errors.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Takes everything recorded since the previous call (or since the start) and starts over.
+     */
+    Snapshot reset() {
+        Map<String, Histogram> histograms = new TreeMap<>();
+        recorders.forEach((endpoint, recorder) -> {
+            Histogram histogram = recorder.getIntervalHistogram();
+            if (histogram.getTotalCount() > 0) {
+                histograms.put(endpoint, histogram);
+            }
+        });
+        Map<String, Long> errorCounts = new TreeMap<>();
+        errors.forEach((endpoint, count) -> {
+            long sum = count.sumThenReset();
+            if (sum > 0) {
+                errorCounts.put(endpoint, sum);
+            }
+        });
+        return new Snapshot(histograms, errorCounts);
+    }
+
+    record Snapshot(Map<String, Histogram> histograms, Map<String, Long> errors) {
+
+        private static final String ROW = "%-28s %9s %7s %9s %9s %9s %9s %9s %9s%n";
+
+        void print(PrintStream out, double seconds) {
+            out.printf(ROW, "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            Histogram total = new Histogram(3);
+            long totalErrors = 0;
+            TreeMap<String, Histogram> endpoints = new TreeMap<>(histograms);
+            errors.keySet().forEach(endpoint -> endpoints.putIfAbsent(endpoint, new Histogram(3)));
+            for (Map.Entry<String, Histogram> entry : endpoints.entrySet()) {
+                long errorCount = errors.getOrDefault(entry.getKey(), 0L);
+                printRow(out, entry.getKey(), entry.getValue(), errorCount, seconds);
+                total.add(entry.getValue());
+                totalErrors += errorCount;
+            }
+            printRow(out, "total", total, totalErrors, seconds);
+        }
+
+        /**
+         * Writes each endpoint's percentile distribution in milliseconds, in the .hgrm format
+         * the HdrHistogram plotter reads.
+         */
+        void write(Path directory, String prefix) throws IOException {
+            Files.createDirectories(directory);
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                String name = prefix + "-" + entry.getKey().toLowerCase().replaceAll("[^a-z0-9]+", "-") + ".hgrm";
+                try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name)))) {
+                    entry.getValue().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+
+        private static void printRow(PrintStream out, String endpoint, Histogram histogram, long errors, double seconds) {
+            long count = histogram.getTotalCount();
+            out.printf(ROW, endpoint, count, errors, String.format("%.1f", (count + errors) / seconds),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    count > 0 ? String.format("%.2f", histogram.getMaxValue() / 1000.0) : "-");
+        }
+
+        private static String millis(Histogram histogram, double percentile) {
+            return histogram.getTotalCount() > 0
+                    ? String.format("%.2f", histogram.getValueAtPercentile(percentile) / 1000.0)
+                    : "-";
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.loadtest;
+
+import org.example.App;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the app on the in-memory backend with a simulated Firestore round trip (or targets
+ * {@code --url}), seeds one account per virtual user, runs a scenario and prints latency
+ * percentiles and throughput per endpoint.
+ */
+public class LoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ConfigurableApplicationContext app = options.url == null ? boot(options) : null;
+        try {
+            String baseUrl = app != null
+                    ? "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort()
+                    : options.url;
+            EndpointStats stats = new EndpointStats();
+            ApiClient api = new ApiClient(baseUrl, stats);
+
+            List<VirtualUser> users = seed(api, stats, options);
+            System.out.printf("%nScenario %s against %s: %d users, %d s warmup, %d s measured, interval %d ms%s%n",
+                    options.scenario, baseUrl, users.size(), options.warmup.toSeconds(), options.duration.toSeconds(),
+                    options.interval().toMillis(), app != null
+                            ? ", backend latency " + options.latencyMillis + " + 0.." + options.jitterMillis + " ms"
+                            : "");
+            EndpointStats.Snapshot result = run(api, stats, users, options);
+            result.print(System.out, options.duration.toMillis() / 1000.0);
+            if (options.output != null) {
+                result.write(options.output, options.scenario.toString());
+                System.out.println("Percentile distributions written to " + options.output.toAbsolutePath());
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(LoadTestOptions options) {
+        // As command-line arguments, so that they win over application.yml and the environment
+        return new SpringApplication(App.class).run(
+                "--spring.profiles.active=memory",
+                "--server.port=0",
+                "--app.storage.latency.base-ms=" + options.latencyMillis,
+                "--app.storage.latency.jitter-ms=" + options.jitterMillis,
+                // Keep request logging out of the measurements
+                "--logging.level.root=WARN",
+                // Tomcat stops before the async executor and warns about its threads on close
+                "--logging.level.org.apache.catalina.loader=ERROR");
+    }
+
+    /**
+     * Registers a fresh account per user (named per run, so a shared instance can be tested
+     * repeatedly) and imports its expenses. Not measured.
+     */
+    private static List<VirtualUser> seed(ApiClient api, EndpointStats stats, LoadTestOptions options)
+            throws Exception {
+        String run = Long.toString(System.currentTimeMillis() / 1000 % 1_679_616, 36);
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 0; i < options.users; i++) {
+            users.add(new VirtualUser("lt" + run + "-" + i, PASSWORD, i));
+        }
+
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(options.users, 16));
+        try {
+            List<Future<Boolean>> seeded = new ArrayList<>();
+            for (VirtualUser user : users) {
+                seeded.add(pool.submit(() -> api.register(user) && api.login(user)
+                        && (options.expensesPerUser == 0 || api.seedExpenses(user, options.expensesPerUser))));
+            }
+            for (Future<Boolean> result : seeded) {
+                if (!result.get()) {
+                    throw new IllegalStateException("Seeding failed; is the target reachable and empty of lt* users?");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        stats.reset();
+        System.out.printf("Seeded %d users with %d expenses each in %d ms%n", users.size(), options.expensesPerUser,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return users;
+    }
+
+    /**
+     * One thread per virtual user. With an interval, iterations are scheduled at fixed times
+     * (staggered across users) and a late iteration starts right away instead of skipping.
+     */
+    private static EndpointStats.Snapshot run(ApiClient api, EndpointStats stats, List<VirtualUser> users,
+                                              LoadTestOptions options) throws Exception {
+        long interval = options.interval().toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(users.size());
+        try {
+            List<Future<?>> prepared = new ArrayList<>();
+            for (VirtualUser user : users) {
+                prepared.add(pool.submit(() -> options.scenario.prepare(api, user)));
+            }
+            for (Future<?> future : prepared) {
+                future.get();
+            }
+
+            long start = System.nanoTime();
+            long measureFrom = start + options.warmup.toNanos();
+            long end = measureFrom + options.duration.toNanos();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                VirtualUser user = users.get(i);
+                long offset = interval * i / users.size();
+                running.add(pool.submit(() -> {
+                    for (long next = start + offset; next < end && !Thread.currentThread().isInterrupted();
+                         next += interval) {
+                        if (interval > 0) {
+                            sleepUntil(next);
+                            user.schedule(next);
+                        }
+                        options.scenario.iterate(api, user, options);
+                        user.iterations++;
+                        if (interval == 0) {
+                            next = System.nanoTime();
+                        }
+                    }
+                }));
+            }
+
+            sleepUntil(measureFrom);
+            stats.reset();
+            System.out.println("Warmup done at " + LocalDateTime.now().withNano(0) + ", measuring");
+            for (Future<?> future : running) {
+                future.get();
+            }
+            return stats.reset();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleepUntil(long nanos) {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Command-line flags, all of the form {@code --name=value}.
+ */
+class LoadTestOptions {
+
+    static final String USAGE = """
+            Usage: LoadTest [--name=value ...]
+              --scenario=NAME          login-burst, dashboard or export (default dashboard)
+              --users=N                concurrent virtual users (default 50)
+              --duration=SECONDS       measured run time (default 30)
+              --warmup=SECONDS         run time discarded before measuring (default 10)
+              --interval-ms=N          pause between a user's iterations; 0 sends back to back.
+                                       Latency is measured from the scheduled start, so a slow
+                                       response also counts against the requests queued behind it
+                                       (default 1000 for dashboard, 0 otherwise)
+              --write-ratio=R          dashboard: share of iterations that also add an expense,
+                                       invalidating the ETags (default 0.05)
+              --expenses-per-user=N    expenses seeded for each user (default 500)
+              --latency-ms=N           simulated Firestore round trip (default 10)
+              --jitter-ms=N            uniform jitter added to each round trip (default 5)
+              --url=URL                test an already running instance instead of booting one
+              --output=DIR             also write an .hgrm percentile file per endpoint
+            """;
+
+    Scenario scenario = Scenario.DASHBOARD;
+    int users = 50;
+    Duration duration = Duration.ofSeconds(30);
+    Duration warmup = Duration.ofSeconds(10);
+    Long intervalMillis;
+    double writeRatio = 0.05;
+    int expensesPerUser = 500;
+    long latencyMillis = 10;
+    long jitterMillis = 5;
+    String url;
+    Path output;
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            switch (name) {
+                case "scenario" -> options.scenario = Scenario.fromName(value);
+                case "users" -> options.users = positive(name, Integer.parseInt(value));
+                case "duration" -> options.duration = Duration.ofSeconds(positive(name, Integer.parseInt(value)));
+                case "warmup" -> options.warmup = Duration.ofSeconds(Integer.parseInt(value));
+                case "interval-ms" -> options.intervalMillis = Long.parseLong(value);
+                case "write-ratio" -> options.writeRatio = Double.parseDouble(value);
+                case "expenses-per-user" -> options.expensesPerUser = Integer.parseInt(value);
+                case "latency-ms" -> options.latencyMillis = Long.parseLong(value);
+                case "jitter-ms" -> options.jitterMillis = Long.parseLong(value);
+                case "url" -> options.url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "output" -> options.output = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        return options;
+    }
+
+    Duration interval() {
+        long millis = intervalMillis != null ? intervalMillis : scenario == Scenario.DASHBOARD ? 1000 : 0;
+        return Duration.ofMillis(millis);
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("--" + name + " must be positive");
+        }
+        return value;
+    }
+}
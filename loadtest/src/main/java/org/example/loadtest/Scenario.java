@@ -0,0 +1,71 @@
+package org.example.loadtest;
+
+/**
+ * What each virtual user does, one iteration at a time.
+ */
+enum Scenario {
+
+    /** Every user logs in again and again: password hashing and token issuing. */
+    LOGIN_BURST("login-burst") {
+        @Override
+        void prepare(ApiClient api, VirtualUser user) {
+        }
+
+        @Override
+        void iterate(ApiClient api, VirtualUser user, LoadTestOptions options) {
+            api.login(user);
+        }
+    },
+
+    /**
+     * A dashboard polling the expense list and the statistics with If-None-Match, as the web
+     * client does; a share of the iterations also add an expense, so some polls miss.
+     */
+    DASHBOARD("dashboard") {
+        @Override
+        void iterate(ApiClient api, VirtualUser user, LoadTestOptions options) {
+            if (user.random.nextDouble() < options.writeRatio) {
+                api.createExpense(user);
+            }
+            api.poll(user, "/api/expenses");
+            api.poll(user, "/api/statistics");
+        }
+    },
+
+    /** Users downloading all of their expenses, alternating CSV and JSON. */
+    EXPORT("export") {
+        @Override
+        void iterate(ApiClient api, VirtualUser user, LoadTestOptions options) {
+            api.get(user, user.iterations % 2 == 0 ? "/api/export/csv" : "/api/export/json");
+        }
+    };
+
+    private final String name;
+
+    Scenario(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs once per user before the clock starts; logs in by default.
+     */
+    void prepare(ApiClient api, VirtualUser user) {
+        api.login(user);
+    }
+
+    abstract void iterate(ApiClient api, VirtualUser user, LoadTestOptions options);
+
+    static Scenario fromName(String name) {
+        for (Scenario scenario : values()) {
+            if (scenario.name.equals(name)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One simulated client: its credentials, token and cached ETags. Used by a single thread.
+ */
+class VirtualUser {
+
+    final String username;
+    final String password;
+    final Random random;
+
+    String token;
+    final Map<String, String> etags = new HashMap<>();
+    long iterations;
+
+    // When the current iteration should have started, if it has not sent a request yet
+    private long scheduledNanos = -1;
+
+    VirtualUser(String username, String password, long seed) {
+        this.username = username;
+        this.password = password;
+        this.random = new Random(seed);
+    }
+
+    void schedule(long nanos) {
+        scheduledNanos = nanos;
+    }
+
+    /**
+     * The start time to measure the next request from. The first request of a paced
+     * iteration is measured from when it was due, so time spent waiting behind a slow
+     * previous iteration is not lost (coordinated omission); the rest from when they are sent.
+     */
+    long requestStart() {
+        long now = System.nanoTime();
+        if (scheduledNanos < 0) {
+            return now;
+        }
+        long start = Math.min(scheduledNanos, now);
+        scheduledNanos = -1;
+        return start;
+    }
+}